@@ -0,0 +1,107 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.python;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.python.api.PythonMetric;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.api.SourceFunction;
+import org.sonar.squidbridge.api.SourceProject;
+import org.sonar.squidbridge.indexer.QueryByParent;
+import org.sonar.squidbridge.indexer.QueryByType;
+import org.sonar.squidbridge.indexer.SquidIndex;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to collect the function complexities of one file of a project of 1k to 100k files, by walking the source tree
+ * of the file as {@link PythonSquidSensor} does, and by querying the index of the whole project as it did before. The
+ * time to save all the files is the number of files times the time per file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class FunctionComplexityBenchmark {
+
+  private static final int FUNCTIONS_PER_FILE = 5;
+
+  @Param({"1000", "10000", "100000"})
+  public int files;
+
+  @Param({"tree", "index"})
+  public String lookup;
+
+  private SquidIndex index;
+  private SourceFile[] sourceFiles;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    if (!"tree".equals(lookup) && !"index".equals(lookup)) {
+      throw new IllegalArgumentException("Unknown lookup '" + lookup + "', expected 'tree' or 'index'.");
+    }
+    index = new SquidIndex();
+    SourceProject project = new SourceProject("Python Project");
+    index.index(project);
+    sourceFiles = new SourceFile[files];
+    for (int i = 0; i < files; i++) {
+      SourceFile file = new SourceFile("file" + i + ".py");
+      project.addChild(file);
+      index.index(file);
+      for (int j = 0; j < FUNCTIONS_PER_FILE; j++) {
+        SourceFunction function = new SourceFunction("f" + j + ":" + (10 * j + 1));
+        function.setMeasure(PythonMetric.COMPLEXITY, j + 1);
+        file.addChild(function);
+        index.index(function);
+      }
+      sourceFiles[i] = file;
+    }
+  }
+
+  @Benchmark
+  public int collect() {
+    SourceFile file = sourceFiles[next];
+    next = (next + 1) % sourceFiles.length;
+    SquidFileResult result = new SquidFileResult();
+    if ("tree".equals(lookup)) {
+      PythonSquidSensor.addFunctionComplexities(file, result);
+    } else {
+      for (SourceCode function : index.search(new QueryByParent(file), new QueryByType(SourceFunction.class))) {
+        result.addFunctionComplexity(function.getDouble(PythonMetric.COMPLEXITY));
+      }
+    }
+    return result.getFunctionComplexities().size();
+  }
+
+}
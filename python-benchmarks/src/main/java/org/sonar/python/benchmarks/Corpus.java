@@ -0,0 +1,112 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Python sources read by the benchmarks. The default corpus is made of the sources parsed by the tests of python-squid,
+ * a larger real-world corpus such as the standard library of CPython is given with "-p corpus=&lt;directory&gt;".
+ */
+public final class Corpus {
+
+  /**
+   * Relative to the root of the project, where the benchmarks are expected to be run from.
+   */
+  public static final String DEFAULT_DIRECTORY = "python-squid/src/test/resources/parser";
+
+  private final List<String> sources;
+  private final int lines;
+
+  private Corpus(List<String> sources) {
+    this.sources = ImmutableList.copyOf(sources);
+    int count = 0;
+    for (String source : sources) {
+      count += lines(source);
+    }
+    this.lines = count;
+  }
+
+  public static Corpus of(List<String> sources) {
+    return new Corpus(sources);
+  }
+
+  /**
+   * @param directory read with all its sub-directories, in the order of the paths of the files
+   */
+  public static Corpus load(String directory) throws IOException {
+    File dir = new File(directory);
+    if (!dir.isDirectory()) {
+      throw new IllegalArgumentException("The corpus '" + dir.getAbsolutePath() + "' is not a directory, the benchmarks must be run "
+        + "from the root of the project or be given a corpus with -p corpus=<directory>.");
+    }
+    List<File> files = Lists.newArrayList(FileUtils.listFiles(dir, new String[] {"py"}, true));
+    if (files.isEmpty()) {
+      throw new IllegalArgumentException("The corpus '" + dir.getAbsolutePath() + "' has no Python file.");
+    }
+    Collections.sort(files);
+    List<String> sources = Lists.newArrayList();
+    for (File file : files) {
+      sources.add(Files.toString(file, Charsets.UTF_8));
+    }
+    return new Corpus(sources);
+  }
+
+  public List<String> sources() {
+    return sources;
+  }
+
+  /**
+   * @return number of lines of all the sources, so that the results can be given per thousand lines
+   */
+  public int lines() {
+    return lines;
+  }
+
+  @Override
+  public String toString() {
+    return sources.size() + " files, " + lines + " lines";
+  }
+
+  private static int lines(String source) {
+    if (source.isEmpty()) {
+      return 0;
+    }
+    int count = 1;
+    for (int i = 0; i < source.length(); i++) {
+      char c = source.charAt(i);
+      if (c == '\n' || (c == '\r' && (i + 1 == source.length() || source.charAt(i + 1) != '\n'))) {
+        count++;
+      }
+    }
+    char last = source.charAt(source.length() - 1);
+    return last == '\n' || last == '\r' ? count - 1 : count;
+  }
+
+}
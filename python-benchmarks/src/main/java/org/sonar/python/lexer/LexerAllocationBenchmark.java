@@ -0,0 +1,104 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.lexer;
+
+import com.sonar.sslr.impl.Lexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.python.benchmarks.Corpus;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes allocated to lex a thousand lines of the corpus, printed at the end of each iteration, with {@link PythonLexer}
+ * and with {@link LegacyPythonLexer}. The allocations of the benchmark thread are read from the JVM, which must be a HotSpot one.
+ * The gc profiler of JMH ("-prof gc") gives the allocations per lex of the whole corpus as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class LexerAllocationBenchmark {
+
+  @Param(Corpus.DEFAULT_DIRECTORY)
+  public String corpus;
+
+  @Param({"dispatching", "legacy"})
+  public String lexer;
+
+  private Corpus sources;
+  private Lexer pythonLexer;
+  private com.sun.management.ThreadMXBean threads;
+
+  private long lines;
+  private long allocatedBytes;
+
+  @Setup
+  public void setUp() throws IOException {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+      throw new IllegalStateException("The allocations of a thread cannot be read from this JVM, run the benchmarks with '-prof gc' instead.");
+    }
+    threads = (com.sun.management.ThreadMXBean) threadMXBean;
+    sources = Corpus.load(corpus);
+    pythonLexer = LexerBenchmark.create(lexer);
+  }
+
+  @Setup(Level.Iteration)
+  public void startIteration() {
+    lines = 0;
+    allocatedBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  @TearDown(Level.Iteration)
+  public void endIteration() {
+    long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBytes;
+    if (lines > 0) {
+      System.out.println(String.format("%n%s lexer: %d bytes allocated per 1000 lines (%s)", lexer, allocated * 1000 / lines, sources));
+    }
+  }
+
+  @Benchmark
+  public int lex() {
+    int tokens = 0;
+    for (String source : sources.sources()) {
+      tokens += pythonLexer.lex(source).size();
+    }
+    lines += sources.lines();
+    return tokens;
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.lexer;
+
+import com.google.common.base.Charsets;
+import com.sonar.sslr.impl.Lexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.python.PythonConfiguration;
+import org.sonar.python.benchmarks.Corpus;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to lex a corpus with {@link PythonLexer}, which dispatches on the current character, and with the channel chain
+ * of {@link LegacyPythonLexer} which tries the channels one after the other.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class LexerBenchmark {
+
+  @Param(Corpus.DEFAULT_DIRECTORY)
+  public String corpus;
+
+  @Param({"dispatching", "legacy"})
+  public String lexer;
+
+  private Corpus sources;
+  private Lexer pythonLexer;
+
+  @Setup
+  public void setUp() throws IOException {
+    sources = Corpus.load(corpus);
+    pythonLexer = create(lexer);
+  }
+
+  @Benchmark
+  public int lex() {
+    int tokens = 0;
+    for (String source : sources.sources()) {
+      tokens += pythonLexer.lex(source).size();
+    }
+    return tokens;
+  }
+
+  /**
+   * @param lexer "dispatching" for {@link PythonLexer}, "legacy" for {@link LegacyPythonLexer}
+   */
+  static Lexer create(String lexer) {
+    PythonConfiguration conf = new PythonConfiguration(Charsets.UTF_8);
+    if ("dispatching".equals(lexer)) {
+      return PythonLexer.create(conf);
+    } else if ("legacy".equals(lexer)) {
+      return LegacyPythonLexer.create(conf);
+    }
+    throw new IllegalArgumentException("Unknown lexer '" + lexer + "', expected 'dispatching' or 'legacy'.");
+  }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.lexer;
+
+import com.sonar.sslr.impl.Lexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to lex generated numeric code made mostly of operators, where {@link PythonPunctuatorChannel} matters most,
+ * with {@link PythonLexer} and with {@link LegacyPythonLexer}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class OperatorLexerBenchmark {
+
+  private static final String[] STATEMENTS = {
+    "x{0} **= (a{0} // 3.5e2 + 0x1F) >> 2 << b{0} - ~c % 7j",
+    "y{0} //= a{0} ** -1.0 * (b{0} | 0b101) ^ (c & 0o17) % 2",
+    "z{0} >>= (a{0} <= 1) + (b{0} >= 2.) - (c != .5) * (d == 1e-3)",
+    "w{0} <<= [a{0}[1:2], b{0}[::3], {c: d <> e}] @ f",
+    "v{0} = a{0} < b{0} > c and d <= e >= f or g != h == 10L",
+    "u{0} += a{0} ** b{0} ** 2; u{0} -= c // d / e; u{0} *= f % g; u{0} /= -h",
+    "t{0} |= a{0} & b{0}; t{0} &= c ^ d; t{0} ^= ~e; t{0} %= `f` + 4J"
+  };
+
+  @Param("1000")
+  public int lines;
+
+  @Param({"dispatching", "legacy"})
+  public String lexer;
+
+  private String source;
+  private Lexer pythonLexer;
+
+  @Setup
+  public void setUp() {
+    source = operatorDenseSource(lines);
+    pythonLexer = LexerBenchmark.create(lexer);
+  }
+
+  @Benchmark
+  public int lex() {
+    return pythonLexer.lex(source).size();
+  }
+
+  static String operatorDenseSource(int lines) {
+    StringBuilder source = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      source.append(STATEMENTS[i % STATEMENTS.length].replace("{0}", Integer.toString(i))).append('\n');
+    }
+    return source.toString();
+  }
+
+}
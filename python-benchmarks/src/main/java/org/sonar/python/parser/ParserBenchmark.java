@@ -0,0 +1,108 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import com.google.common.base.Charsets;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.python.PythonConfiguration;
+import org.sonar.python.benchmarks.Corpus;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to parse the corpus for each {@link MemoizationStrategy}, and the peak of the heap used during each iteration,
+ * printed at its end as the sum of the peaks of the heap pools. The heap is collected before each iteration, so that the peak counts the memory held by the parse
+ * on top of the corpus, together with the garbage which the collector did not reclaim yet: running with a fixed heap
+ * ("-jvmArgs -Xms512m -Xmx512m") makes the peaks of the strategies comparable.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+  @Param(Corpus.DEFAULT_DIRECTORY)
+  public String corpus;
+
+  @Param({"all", "none", "TEST,OR_TEST,ATOM"})
+  public String memoization;
+
+  private Corpus sources;
+  private Parser<Grammar> parser;
+
+  @Setup
+  public void setUp() throws IOException {
+    sources = Corpus.load(corpus);
+    PythonConfiguration conf = new PythonConfiguration(Charsets.UTF_8);
+    conf.setMemoization(MemoizationStrategy.parse(memoization));
+    parser = PythonParser.create(conf);
+  }
+
+  @Setup(Level.Iteration)
+  public void startIteration() {
+    System.gc();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void endIteration() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    System.out.println(String.format("%nmemoization %s: peak heap %d KB (%s)", memoization, peak / 1024, sources));
+  }
+
+  @Benchmark
+  public int parse() {
+    int nodes = 0;
+    for (String source : sources.sources()) {
+      nodes += parser.parse(source).getNumberOfChildren();
+    }
+    return nodes;
+  }
+
+}
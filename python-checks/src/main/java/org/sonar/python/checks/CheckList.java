@@ -64,4 +64,19 @@ public final class CheckList {
       EmptyNestedBlockCheck.class);
   }
 
+  /**
+   * Checks which only look at tokens and comments, so that they also work when the files are lexed but not parsed.
+   */
+  public static List<Class> getTokenChecks() {
+    return ImmutableList.<Class>of(
+      CommentRegularExpressionCheck.class,
+      LineLengthCheck.class,
+      BackticksUsageCheck.class,
+      InequalityUsageCheck.class,
+      LongIntegerWithLowercaseSuffixUsageCheck.class,
+      TooManyLinesInFileCheck.class,
+      TrailingCommentCheck.class,
+      BackslashInStringCheck.class);
+  }
+
 }
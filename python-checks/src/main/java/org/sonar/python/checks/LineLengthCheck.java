@@ -26,6 +26,8 @@ import com.sonar.sslr.api.Token;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.python.PythonVisitorContext;
+import org.sonar.python.metrics.TokenLines;
 import org.sonar.squidbridge.checks.SquidCheck;
 
 @Rule(
@@ -45,25 +47,27 @@ public class LineLengthCheck extends SquidCheck<Grammar> implements AstAndTokenV
   }
 
   private Token previousToken;
+  private TokenLines previousTokenLines;
 
   @Override
   public void visitFile(AstNode astNode) {
     previousToken = null;
+    previousTokenLines = null;
   }
 
   @Override
   public void leaveFile(AstNode astNode) {
     previousToken = null;
+    previousTokenLines = null;
   }
 
   public void visitToken(Token token) {
     if (!token.isGeneratedCode()) {
       if (previousToken != null && previousToken.getLine() != token.getLine()) {
         // Note that AbstractLineLengthCheck doesn't support tokens which span multiple lines - see SONARPLUGINS-2025
-        String[] lines = previousToken.getValue().split("\r?\n|\r", -1);
         int length = previousToken.getColumn();
-        for (int line = 0; line < lines.length; line++) {
-          length += lines[line].length();
+        for (int line = 0; line < previousTokenLines.count(); line++) {
+          length += previousTokenLines.lineLength(line);
           if (length > getMaximumLineLength()) {
             // Note that method from AbstractLineLengthCheck generates other message - see SONARPLUGINS-1809
             getContext().createLineViolation(this,
@@ -76,6 +80,8 @@ public class LineLengthCheck extends SquidCheck<Grammar> implements AstAndTokenV
         }
       }
       previousToken = token;
+      // the lines of the token are computed once for all the visitors while it is being visited
+      previousTokenLines = PythonVisitorContext.tokenLines(getContext(), token);
     }
   }
 
@@ -19,14 +19,30 @@
  */
 package org.sonar.python.checks;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.rules.AnnotationRuleParser;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleParam;
+import org.sonar.python.PythonAstScanner;
+import org.sonar.python.PythonConfiguration;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.indexer.QueryByType;
 
 import java.io.File;
+import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
@@ -36,6 +52,9 @@ import static org.fest.assertions.Assertions.assertThat;
 
 public class CheckListTest {
 
+  @org.junit.Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   /**
    * Enforces that each check declared in list.
    */
@@ -51,6 +70,11 @@ public class CheckListTest {
     assertThat(CheckList.getChecks().size()).isEqualTo(count);
   }
 
+  @Test
+  public void token_checks_are_checks() {
+    assertThat(CheckList.getChecks().containsAll(CheckList.getTokenChecks())).isTrue();
+  }
+
   /**
    * Enforces that each check has test, name and description.
    */
@@ -92,4 +116,67 @@ public class CheckListTest {
     }
   }
 
+  /**
+   * The tree and tokens of a file must not outlive its scan: neither the checks nor the parser may keep them.
+   */
+  @Test
+  public void should_release_syntax_tree_and_tokens_of_scanned_files() throws Exception {
+    File large = temp.newFile("large.py");
+    Files.write(Strings.repeat("def f(x):\n    return x + 1  # TODO\n", 5000), large, Charsets.UTF_8);
+    File small = temp.newFile("small.py");
+    Files.write("def g():\n    pass\n", small, Charsets.UTF_8);
+
+    List<SquidAstVisitor<Grammar>> visitors = Lists.newArrayList();
+    for (Class check : CheckList.getChecks()) {
+      SquidAstVisitor<Grammar> visitor = (SquidAstVisitor<Grammar>) check.newInstance();
+      if (visitor instanceof XPathCheck) {
+        ((XPathCheck) visitor).xpathQuery = "//STATEMENT";
+      } else if (visitor instanceof CommentRegularExpressionCheck) {
+        ((CommentRegularExpressionCheck) visitor).regularExpression = "(?i).*TODO.*";
+      }
+      visitors.add(visitor);
+    }
+    ReleaseRecorder recorder = new ReleaseRecorder();
+    visitors.add(recorder);
+    AstScanner<Grammar> scanner = PythonAstScanner.create(new PythonConfiguration(Charsets.UTF_8), visitors.toArray(new SquidAstVisitor[visitors.size()]));
+    scanner.scanFiles(ImmutableList.of(large, small));
+
+    // checked from the visit of the second file, once all the checks have left the first one
+    assertThat(recorder.releasedBeforeNextFile).containsExactly(true);
+    // the parser is still reachable through the scanner, and must not keep the tokens of the last file
+    assertThat(recorder.isReleased()).isTrue();
+    assertThat(scanner.getIndex().search(new QueryByType(SourceFile.class))).hasSize(2);
+  }
+
+  /**
+   * Runs after the checks, and keeps weak references to the tree and first token of the file being scanned.
+   */
+  private static class ReleaseRecorder extends SquidAstVisitor<Grammar> {
+
+    private final List<Boolean> releasedBeforeNextFile = Lists.newArrayList();
+    private WeakReference<AstNode> tree;
+    private WeakReference<Token> token;
+
+    @Override
+    public void visitFile(AstNode astNode) {
+      if (tree != null) {
+        releasedBeforeNextFile.add(isReleased());
+      }
+      tree = new WeakReference<AstNode>(astNode);
+      token = new WeakReference<Token>(astNode.getToken());
+    }
+
+    boolean isReleased() {
+      for (int i = 0; i < 10 && !isCollected(); i++) {
+        System.gc();
+      }
+      return isCollected();
+    }
+
+    private boolean isCollected() {
+      return tree.get() == null && token.get() == null;
+    }
+
+  }
+
 }
@@ -33,7 +33,6 @@ import org.sonar.squidbridge.CommentAnalyser;
 import org.sonar.squidbridge.SourceCodeBuilderCallback;
 import org.sonar.squidbridge.SourceCodeBuilderVisitor;
 import org.sonar.squidbridge.SquidAstVisitor;
-import org.sonar.squidbridge.SquidAstVisitorContextImpl;
 import org.sonar.squidbridge.api.SourceClass;
 import org.sonar.squidbridge.api.SourceCode;
 import org.sonar.squidbridge.api.SourceFile;
@@ -46,7 +45,9 @@ import org.sonar.squidbridge.metrics.CounterVisitor;
 import org.sonar.squidbridge.metrics.LinesVisitor;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 public final class PythonAstScanner {
 
@@ -70,11 +71,31 @@ public final class PythonAstScanner {
   }
 
   public static AstScanner<Grammar> create(PythonConfiguration conf, SquidAstVisitor<Grammar>... visitors) {
-    final SquidAstVisitorContextImpl<Grammar> context = new SquidAstVisitorContextImpl<Grammar>(new SourceProject("Python Project"));
+    return create(conf, null, Arrays.asList(visitors));
+  }
+
+  /**
+   * Creates a scanner whose outer visitor visits each file before all the other visitors, and leaves it after them:
+   * when it leaves a file, the measures and messages of the file are complete, except for the measures of its functions
+   * and classes which Squid only adds to the file at the end of the scan. The outer visitor can be null.
+   */
+  public static AstScanner<Grammar> create(PythonConfiguration conf, SquidAstVisitor<Grammar> outerVisitor, List<SquidAstVisitor<Grammar>> visitors) {
+    final PythonVisitorContext context = new PythonVisitorContext(new SourceProject("Python Project"));
     final Parser<Grammar> parser = PythonParser.create(conf);
 
     AstScanner.Builder<Grammar> builder = AstScanner.<Grammar>builder(context).setBaseParser(parser);
 
+    /* Visitors leave the files in the reverse order */
+    if (outerVisitor != null) {
+      builder.withSquidAstVisitor(outerVisitor);
+    }
+    builder.withSquidAstVisitor(new SquidAstVisitor<Grammar>() {
+      @Override
+      public void leaveFile(AstNode astNode) {
+        context.clearTokenLines();
+      }
+    });
+
     /* Metrics */
     builder.withMetrics(PythonMetric.values());
 
@@ -103,6 +124,30 @@ public final class PythonAstScanner {
 
 
 
+    /* Metrics */
+    builder.withSquidAstVisitor(new LinesVisitor<Grammar>(PythonMetric.LINES));
+    builder.withSquidAstVisitor(new PythonLinesOfCodeVisitor<Grammar>(PythonMetric.LINES_OF_CODE));
+    builder.withSquidAstVisitor(CommentsVisitor.<Grammar>builder().withCommentMetric(PythonMetric.COMMENT_LINES)
+      .withNoSonar(true)
+      .withIgnoreHeaderComment(conf.getIgnoreHeaderComments())
+      .build());
+
+    if (!conf.isTokensOnly()) {
+      addSyntaxTreeVisitors(builder);
+    }
+
+    /* External visitors (typically Check ones) */
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      builder.withSquidAstVisitor(visitor);
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Visitors of the syntax tree, which are not added when the files are only lexed.
+   */
+  private static void addSyntaxTreeVisitors(AstScanner.Builder<Grammar> builder) {
     /* Classes */
     builder.withSquidAstVisitor(new SourceCodeBuilderVisitor<Grammar>(new SourceCodeBuilderCallback() {
       public SourceCode createSourceCode(SourceCode parentSourceCode, AstNode astNode) {
@@ -134,8 +179,6 @@ public final class PythonAstScanner {
       .build());
 
     /* Metrics */
-    builder.withSquidAstVisitor(new LinesVisitor<Grammar>(PythonMetric.LINES));
-    builder.withSquidAstVisitor(new PythonLinesOfCodeVisitor<Grammar>(PythonMetric.LINES_OF_CODE));
     AstNodeType[] complexityAstNodeType = new AstNodeType[]{
       // Entry points
       PythonGrammar.FUNCDEF,
@@ -158,22 +201,10 @@ public final class PythonAstScanner {
       .subscribeTo(complexityAstNodeType)
       .build());
 
-    builder.withSquidAstVisitor(CommentsVisitor.<Grammar>builder().withCommentMetric(PythonMetric.COMMENT_LINES)
-      .withNoSonar(true)
-      .withIgnoreHeaderComment(conf.getIgnoreHeaderComments())
-      .build());
     builder.withSquidAstVisitor(CounterVisitor.<Grammar>builder()
       .setMetricDef(PythonMetric.STATEMENTS)
       .subscribeTo(PythonGrammar.STATEMENT)
       .build());
-
-
-    /* External visitors (typically Check ones) */
-    for (SquidAstVisitor<Grammar> visitor : visitors) {
-      builder.withSquidAstVisitor(visitor);
-    }
-
-    return builder.build();
   }
 
 }
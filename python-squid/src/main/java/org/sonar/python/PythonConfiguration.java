@@ -19,13 +19,21 @@
  */
 package org.sonar.python;
 
+import org.sonar.python.parser.MemoizationStrategy;
+import org.sonar.python.parser.ParseProfile;
 import org.sonar.squidbridge.api.SquidConfiguration;
 
 import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
 
 public class PythonConfiguration extends SquidConfiguration {
 
   private boolean ignoreHeaderComments;
+  private MemoizationStrategy memoization = MemoizationStrategy.ALL;
+  private ParseProfile parseProfile;
+  private int parsingThreads = 1;
+  private ExecutorService parsingExecutor;
+  private boolean tokensOnly;
 
   public PythonConfiguration(Charset charset) {
     super(charset);
@@ -39,4 +47,62 @@ public class PythonConfiguration extends SquidConfiguration {
     return ignoreHeaderComments;
   }
 
+  public void setMemoization(MemoizationStrategy memoization) {
+    this.memoization = memoization;
+  }
+
+  public MemoizationStrategy getMemoization() {
+    return memoization;
+  }
+
+  /**
+   * @param parseProfile where parsers record the time spent on each file, or null to disable profiling
+   */
+  public void setParseProfile(ParseProfile parseProfile) {
+    this.parseProfile = parseProfile;
+  }
+
+  /**
+   * @return null when profiling is disabled
+   */
+  public ParseProfile getParseProfile() {
+    return parseProfile;
+  }
+
+  /**
+   * @param parsingThreads number of threads used to parse the top-level statements of a large file in parallel, 1 to parse all the files sequentially
+   */
+  public void setParsingThreads(int parsingThreads) {
+    this.parsingThreads = parsingThreads;
+  }
+
+  public int getParsingThreads() {
+    return parsingThreads;
+  }
+
+  /**
+   * @param parsingExecutor runs the parse of the top-level statements of large files for all the parsers of the configuration, with
+   *                        {@link #getParsingThreads()} threads. It is shut down by its owner once the files are parsed. Without executor,
+   *                        the files are parsed sequentially.
+   */
+  public void setParsingExecutor(ExecutorService parsingExecutor) {
+    this.parsingExecutor = parsingExecutor;
+  }
+
+  public ExecutorService getParsingExecutor() {
+    return parsingExecutor;
+  }
+
+  /**
+   * @param tokensOnly true to lex the files without parsing them: the visitors then see each token as a child of the FILE_INPUT node,
+   *                   and only the metrics computed from tokens and comments are available
+   */
+  public void setTokensOnly(boolean tokensOnly) {
+    this.tokensOnly = tokensOnly;
+  }
+
+  public boolean isTokensOnly() {
+    return tokensOnly;
+  }
+
 }
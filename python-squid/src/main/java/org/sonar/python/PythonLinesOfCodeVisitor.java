@@ -55,12 +55,12 @@ public class PythonLinesOfCodeVisitor<GRAMMAR extends Grammar> extends SquidAstV
   public void visitToken(Token token) {
     if (token.getType() != EOF && token.getType() != PythonTokenType.DEDENT && token.getType() != PythonTokenType.INDENT && token.getType() != PythonTokenType.NEWLINE) {
       /* Handle all the lines of the token */
-      String[] tokenLines = token.getValue().split("\n", -1);
+      int tokenLines = PythonVisitorContext.tokenLines(getContext(), token).count();
 
       int firstLineAlreadyCounted = lastTokenLine == token.getLine() ? 1 : 0;
-      getContext().peekSourceCode().add(metric, tokenLines.length - firstLineAlreadyCounted);
+      getContext().peekSourceCode().add(metric, tokenLines - firstLineAlreadyCounted);
 
-      lastTokenLine = token.getLine() + tokenLines.length - 1;
+      lastTokenLine = token.getLine() + tokenLines - 1;
     }
   }
 
@@ -0,0 +1,72 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python;
+
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import org.sonar.python.metrics.TokenLines;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+import org.sonar.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.squidbridge.api.SourceProject;
+
+/**
+ * Context of the visitors of a {@link PythonAstScanner}, which computes the lines of the token being visited once for all the visitors.
+ * The lines of the last token are kept until the file is left, so that visiting a token costs a single pass over its value
+ * whatever the number of visitors which need its lines.
+ */
+public class PythonVisitorContext extends SquidAstVisitorContextImpl<Grammar> {
+
+  private Token linesToken;
+  private TokenLines lines;
+
+  public PythonVisitorContext(SourceProject project) {
+    super(project);
+  }
+
+  /**
+   * Lines of the given token, computed when it differs from the token of the previous call.
+   */
+  public TokenLines getTokenLines(Token token) {
+    if (token != linesToken) {
+      lines = TokenLines.of(token.getValue());
+      linesToken = token;
+    }
+    return lines;
+  }
+
+  /**
+   * Drops the last token, so that the tokens of a file can be collected as soon as it has been left.
+   */
+  void clearTokenLines() {
+    linesToken = null;
+    lines = null;
+  }
+
+  /**
+   * Lines of the token, shared with the other visitors when the context is the one of a {@link PythonAstScanner}.
+   */
+  public static TokenLines tokenLines(SquidAstVisitorContext<?> context, Token token) {
+    if (context instanceof PythonVisitorContext) {
+      return ((PythonVisitorContext) context).getTokenLines(token);
+    }
+    return TokenLines.of(token.getValue());
+  }
+
+}
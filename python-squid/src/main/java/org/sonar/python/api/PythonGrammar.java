@@ -145,6 +145,15 @@ public enum PythonGrammar implements GrammarRuleKey {
   FILE_INPUT;
 
   public static LexerfulGrammarBuilder create() {
+    LexerfulGrammarBuilder b = createWithoutMemoization();
+    b.buildWithMemoizationOfMatchesForAllRules();
+    return b;
+  }
+
+  /**
+   * Matches of the rules are not memoized: see {@link org.sonar.python.parser.MemoizationStrategy} to memoize some of them.
+   */
+  public static LexerfulGrammarBuilder createWithoutMemoization() {
     LexerfulGrammarBuilder b = LexerfulGrammarBuilder.create();
 
     b.rule(FILE_INPUT).is(b.zeroOrMore(b.firstOf(NEWLINE, STATEMENT)), EOF);
@@ -155,7 +164,6 @@ public enum PythonGrammar implements GrammarRuleKey {
     expressions(b);
 
     b.setRootRule(FILE_INPUT);
-    b.buildWithMemoizationOfMatchesForAllRules();
 
     return b;
   }
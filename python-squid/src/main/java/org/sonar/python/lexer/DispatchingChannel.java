@@ -0,0 +1,113 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.lexer;
+
+import com.google.common.collect.Lists;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+import java.util.List;
+
+/**
+ * Tries only the channels which can consume the current character, in the order in which they have been added,
+ * instead of trying every channel in turn. Characters outside of the ASCII range are offered to all the channels.
+ */
+public final class DispatchingChannel extends Channel<Lexer> {
+
+  private static final int TABLE_SIZE = 128;
+
+  private final Channel<Lexer>[][] channelsByChar;
+  private final Channel<Lexer>[] allChannels;
+
+  private DispatchingChannel(Builder builder) {
+    allChannels = toArray(builder.channels);
+    channelsByChar = newArray(TABLE_SIZE);
+    for (int ch = 0; ch < TABLE_SIZE; ch++) {
+      List<Channel<Lexer>> candidates = Lists.newArrayList();
+      for (int i = 0; i < builder.channels.size(); i++) {
+        String firstChars = builder.firstChars.get(i);
+        if (firstChars == null || firstChars.indexOf(ch) != -1) {
+          candidates.add(builder.channels.get(i));
+        }
+      }
+      channelsByChar[ch] = toArray(candidates);
+    }
+  }
+
+  @Override
+  public boolean consume(CodeReader code, Lexer lexer) {
+    int ch = code.peek();
+    Channel<Lexer>[] candidates = ch >= 0 && ch < TABLE_SIZE ? channelsByChar[ch] : allChannels;
+    for (Channel<Lexer> channel : candidates) {
+      if (channel.consume(code, lexer)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Channel<Lexer>[] toArray(List<Channel<Lexer>> channels) {
+    return channels.toArray(new Channel[channels.size()]);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Channel<Lexer>[][] newArray(int size) {
+    return new Channel[size][];
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static final class Builder {
+
+    private final List<Channel<Lexer>> channels = Lists.newArrayList();
+    private final List<String> firstChars = Lists.newArrayList();
+
+    private Builder() {
+    }
+
+    /**
+     * @param firstChars all the characters a token of the channel can start with
+     */
+    public Builder withChannel(Channel<Lexer> channel, String firstChars) {
+      channels.add(channel);
+      this.firstChars.add(firstChars);
+      return this;
+    }
+
+    /**
+     * Adds a channel which can start on any character.
+     */
+    public Builder withChannel(Channel<Lexer> channel) {
+      channels.add(channel);
+      firstChars.add(null);
+      return this;
+    }
+
+    public DispatchingChannel build() {
+      return new DispatchingChannel(this);
+    }
+
+  }
+
+}
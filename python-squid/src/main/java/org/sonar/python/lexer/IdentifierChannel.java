@@ -0,0 +1,181 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.lexer;
+
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.python.api.PythonKeyword;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+import java.util.Map;
+
+/**
+ * http://docs.python.org/reference/lexical_analysis.html#identifiers
+ * http://docs.python.org/reference/lexical_analysis.html#keywords
+ *
+ * Keywords are found through a perfect hash of their first character, last character and length,
+ * so that they are recognized without creating the string of the word. When no perfect hash is found within
+ * a bounded search, for instance because two keywords have the same first character, last character and length,
+ * the words are looked up in a map instead.
+ */
+public class IdentifierChannel extends Channel<Lexer> {
+
+  private static final int MAX_TABLE_SIZE = 256;
+
+  private static final PythonKeyword[] KEYWORDS = PythonKeyword.values();
+  private static final Map<String, PythonKeyword> KEYWORDS_BY_VALUE = Maps.newHashMap();
+  private static final int MAX_KEYWORD_LENGTH;
+
+  // slots of the perfect hash, holding the index of a keyword plus one, or null when there is no perfect hash
+  private static final int[] TABLE;
+  private static final int MULTIPLIER;
+
+  static {
+    int maxLength = 0;
+    String[] values = new String[KEYWORDS.length];
+    for (int i = 0; i < KEYWORDS.length; i++) {
+      values[i] = KEYWORDS[i].getValue();
+      maxLength = Math.max(maxLength, values[i].length());
+      KEYWORDS_BY_VALUE.put(values[i], KEYWORDS[i]);
+    }
+    MAX_KEYWORD_LENGTH = maxLength;
+
+    int[] table = null;
+    int multiplier = 0;
+    for (int size = Integer.highestOneBit(values.length) * 4; table == null && size <= MAX_TABLE_SIZE; size *= 2) {
+      multiplier = findMultiplier(values, size);
+      if (multiplier > 0) {
+        table = buildTable(values, size, multiplier);
+      }
+    }
+    TABLE = table;
+    MULTIPLIER = multiplier;
+  }
+
+  private final StringBuilder sb = new StringBuilder();
+
+  @Override
+  public boolean consume(CodeReader code, Lexer output) {
+    if (!isIdentifierStart(code.charAt(0))) {
+      return false;
+    }
+
+    int line = code.getLinePosition();
+    int column = code.getColumnPosition();
+    int length = 1;
+    while (isIdentifierPart(code.charAt(length))) {
+      length++;
+    }
+
+    PythonKeyword keyword = keyword(code, length);
+    String value;
+    if (keyword == null) {
+      for (int i = 0; i < length; i++) {
+        sb.append((char) code.pop());
+      }
+      value = sb.toString();
+      sb.setLength(0);
+    } else {
+      for (int i = 0; i < length; i++) {
+        code.pop();
+      }
+      value = keyword.getValue();
+    }
+
+    output.addToken(Token.builder()
+        .setLine(line)
+        .setColumn(column)
+        .setURI(output.getURI())
+        .setValueAndOriginalValue(value)
+        .setType(keyword == null ? GenericTokenType.IDENTIFIER : keyword)
+        .build());
+    return true;
+  }
+
+  private static PythonKeyword keyword(CodeReader code, int length) {
+    if (length > MAX_KEYWORD_LENGTH) {
+      return null;
+    }
+    if (TABLE == null) {
+      return KEYWORDS_BY_VALUE.get(new String(code.peek(length)));
+    }
+    int slot = TABLE[hash(code.charAt(0), code.charAt(length - 1), length, MULTIPLIER, TABLE.length)];
+    if (slot == 0) {
+      return null;
+    }
+    PythonKeyword candidate = KEYWORDS[slot - 1];
+    String value = candidate.getValue();
+    if (value.length() != length) {
+      return null;
+    }
+    for (int i = 0; i < length; i++) {
+      if (value.charAt(i) != code.charAt(i)) {
+        return null;
+      }
+    }
+    return candidate;
+  }
+
+  static boolean hasPerfectHash() {
+    return TABLE != null;
+  }
+
+  /**
+   * @return the smallest multiplier, at most size * size, which gives a different slot to each value in a table of the given size,
+   * or 0 when there is none
+   */
+  static int findMultiplier(String[] values, int size) {
+    for (int multiplier = 1; multiplier <= size * size; multiplier++) {
+      if (buildTable(values, size, multiplier) != null) {
+        return multiplier;
+      }
+    }
+    return 0;
+  }
+
+  private static int[] buildTable(String[] values, int size, int multiplier) {
+    int[] table = new int[size];
+    for (int i = 0; i < values.length; i++) {
+      String value = values[i];
+      int hash = hash(value.charAt(0), value.charAt(value.length() - 1), value.length(), multiplier, size);
+      if (table[hash] != 0) {
+        return null;
+      }
+      table[hash] = i + 1;
+    }
+    return table;
+  }
+
+  private static int hash(char first, char last, int length, int multiplier, int size) {
+    return ((first * multiplier) ^ (last + length * multiplier)) & (size - 1);
+  }
+
+  private static boolean isIdentifierStart(char ch) {
+    return ((ch >= 'a') && (ch <= 'z')) || ((ch >= 'A') && (ch <= 'Z')) || (ch == '_');
+  }
+
+  private static boolean isIdentifierPart(char ch) {
+    return isIdentifierStart(ch) || ((ch >= '0') && (ch <= '9'));
+  }
+
+}
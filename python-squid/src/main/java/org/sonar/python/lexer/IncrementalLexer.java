@@ -0,0 +1,467 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.lexer;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.python.PythonConfiguration;
+import org.sonar.python.api.PythonTokenType;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lexes successive versions of the same source, re-lexing only the lines around each edit.
+ *
+ * The source is kept as a list of segments of about {@link #SEGMENT_LINES} lines. Each segment starts at a line which is outside
+ * of any token, bracket or joined line, and which has no pending comment, so that its tokens only depend on its text and on the
+ * state of the lexer at its start. An edit re-lexes the segments it touches, followed by the next ones until the state of the
+ * lexer at the end of the re-lexed text is the same as at the start of the next segment: from there on, the previous segments
+ * are kept as they are. The lines of their tokens are only shifted when the tokens are read.
+ */
+public class IncrementalLexer {
+
+  static final int SEGMENT_LINES = 32;
+
+  // ends the text of a segment which is not the last one, so that the state of the lexer at the end of the segment can be recorded
+  private static final char SENTINEL = '\0';
+  private static final char EOF = (char) -1;
+
+  private final LexerState lexerState = new LexerState();
+  private final SnapshotChannel snapshotChannel = new SnapshotChannel();
+  private final Lexer lexer;
+  private final int linesPerSegment;
+  private final LexerState initialState = new LexerState();
+
+  private final List<Segment> segments = Lists.newArrayList();
+  // offset, line and index of the first token of each segment, computed after each change
+  private int[] segmentOffsets;
+  private int[] segmentFirstLines;
+  private int[] segmentTokens;
+  private int length;
+  private int tokenCount;
+  private int relexedTokens;
+
+  public IncrementalLexer(PythonConfiguration conf) {
+    this(conf, SEGMENT_LINES);
+  }
+
+  IncrementalLexer(PythonConfiguration conf, int linesPerSegment) {
+    this.lexer = PythonLexer.create(conf, lexerState, snapshotChannel);
+    this.linesPerSegment = linesPerSegment;
+    initialState.reset();
+  }
+
+  /**
+   * Lexes the whole source.
+   */
+  public List<Token> lex(String source) {
+    relexedTokens = 0;
+    segments.clear();
+    segments.addAll(lexWindow(source, initialState, 1, false).segments);
+    index();
+    return getTokens();
+  }
+
+  /**
+   * Replaces a range of the source which was lexed last, and patches its tokens.
+   *
+   * @param offset start of the replaced range
+   * @param removedLength length of the replaced range
+   * @param inserted text which replaces the range
+   */
+  public List<Token> update(int offset, int removedLength, String inserted) {
+    Preconditions.checkState(segmentOffsets != null, "No source has been lexed");
+    Preconditions.checkArgument(offset >= 0 && removedLength >= 0 && offset + removedLength <= length, "Invalid range of the source");
+    relexedTokens = 0;
+    if (removedLength == 0 && inserted.isEmpty()) {
+      return getTokens();
+    }
+    int end = offset + removedLength;
+    // the character before the edit can be a \r which becomes the first character of a \r\n
+    int first = segmentAt(Math.max(0, offset - 1));
+    int last = end == length ? segments.size() - 1 : segmentAt(end);
+
+    String text = segments.get(first).text.substring(0, offset - segmentOffsets[first])
+      + inserted
+      + segments.get(last).text.substring(end - segmentOffsets[last]);
+    LexerState state = segments.get(first).startState;
+    int line = segmentFirstLines[first];
+    int next = last + 1;
+    List<Segment> relexed = Lists.newArrayList();
+    while (true) {
+      boolean more = next < segments.size();
+      Window window = lexWindow(text, state, line, more);
+      if (!more || window.convergesWith(segments.get(next), text)) {
+        relexed.addAll(window.segments);
+        break;
+      }
+      // the text is lexed again with the next segment, from the start of its last segment
+      Segment restart = window.segments.get(window.segments.size() - 1);
+      relexed.addAll(window.segments.subList(0, window.segments.size() - 1));
+      text = restart.text + segments.get(next).text;
+      state = restart.startState;
+      line = restart.firstLine;
+      next++;
+    }
+
+    List<Segment> replaced = segments.subList(first, next);
+    replaced.clear();
+    replaced.addAll(relexed);
+    index();
+    return getTokens();
+  }
+
+  /**
+   * Tokens of the last version of the source. The list is a view which is valid until the next call to {@link #lex(String)}
+   * or {@link #update(int, int, String)}.
+   */
+  public List<Token> getTokens() {
+    return new TokenList();
+  }
+
+  /**
+   * Number of tokens produced by the lexer during the last call to {@link #lex(String)} or {@link #update(int, int, String)}.
+   */
+  int getRelexedTokens() {
+    return relexedTokens;
+  }
+
+  private int segmentAt(int offset) {
+    int i = Arrays.binarySearch(segmentOffsets, offset);
+    return i >= 0 ? lastWithOffset(i) : -i - 2;
+  }
+
+  /**
+   * Empty segments share the offset of the next one.
+   */
+  private int lastWithOffset(int i) {
+    int result = i;
+    while (result + 1 < segmentOffsets.length && segmentOffsets[result + 1] == segmentOffsets[i]) {
+      result++;
+    }
+    return result;
+  }
+
+  private void index() {
+    segmentOffsets = new int[segments.size()];
+    segmentFirstLines = new int[segments.size()];
+    segmentTokens = new int[segments.size()];
+    int offset = 0;
+    int line = 1;
+    int tokens = 0;
+    for (int i = 0; i < segments.size(); i++) {
+      Segment segment = segments.get(i);
+      segmentOffsets[i] = offset;
+      segmentFirstLines[i] = line;
+      segmentTokens[i] = tokens;
+      offset += segment.text.length();
+      line += segment.lineBreaks;
+      tokens += segment.tokens.size();
+    }
+    length = offset;
+    tokenCount = tokens;
+  }
+
+  /**
+   * Lexes a text which starts a line, in the given state.
+   *
+   * @param firstLine line of the source at which the text starts
+   * @param more true if the text is followed by other segments, so that it ends with a line break
+   */
+  private Window lexWindow(String text, LexerState state, int firstLine, boolean more) {
+    snapshotChannel.start(more);
+    lexerState.resumeFrom(state);
+    List<Token> lexed = lexer.lex(more ? (text + SENTINEL) : text);
+    relexedTokens += lexed.size();
+    Boundary end = snapshotChannel.end;
+    List<Token> tokens = Lists.newArrayList(more && end != null ? lexed.subList(0, end.tokens) : lexed);
+
+    List<Boundary> boundaries = snapshotChannel.boundaries;
+    if (more) {
+      // a string which is not terminated in the text can be terminated by the next segments
+      int unterminated = unterminatedString(tokens);
+      if (unterminated < tokens.size()) {
+        end = null;
+        while (!boundaries.isEmpty() && boundaries.get(boundaries.size() - 1).tokens > unterminated) {
+          boundaries.remove(boundaries.size() - 1);
+        }
+      }
+    }
+    int[] offsets = lineOffsets(text, boundaries);
+    List<Segment> windowSegments = Lists.newArrayList();
+    Boundary start = new Boundary(1, 0, state);
+    int startOffset = 0;
+    for (int i = 0; i <= boundaries.size(); i++) {
+      Boundary boundary = i < boundaries.size() ? boundaries.get(i) : null;
+      int endOffset = boundary == null ? text.length() : offsets[i];
+      String segmentText = text.substring(startOffset, endOffset);
+      int lineBreaks = boundary == null ? lineBreaks(segmentText) : boundary.line - start.line;
+      List<Token> segmentTokens = tokens.subList(start.tokens, boundary == null ? tokens.size() : boundary.tokens);
+      windowSegments.add(new Segment(segmentText, lineBreaks, start.state, firstLine + start.line - 1, segmentTokens, start.line));
+      if (boundary != null) {
+        start = boundary;
+        startOffset = endOffset;
+      }
+    }
+    return new Window(windowSegments, end);
+  }
+
+  /**
+   * Index of the first quote which did not start a string, or the number of tokens.
+   */
+  private static int unterminatedString(List<Token> tokens) {
+    for (int i = 0; i < tokens.size(); i++) {
+      Token token = tokens.get(i);
+      if (token.getType() == GenericTokenType.UNKNOWN_CHAR && ("'".equals(token.getOriginalValue()) || "\"".equals(token.getOriginalValue()))) {
+        return i;
+      }
+    }
+    return tokens.size();
+  }
+
+  /**
+   * Offsets of the lines of the boundaries, where a line ends with \n, \r or \r\n as in {@link CodeReader}.
+   */
+  private static int[] lineOffsets(String text, List<Boundary> boundaries) {
+    int[] offsets = new int[boundaries.size()];
+    int line = 1;
+    int b = 0;
+    for (int i = 0; i < text.length() && b < offsets.length; i++) {
+      if (isLineBreak(text, i)) {
+        line++;
+        while (b < offsets.length && boundaries.get(b).line == line) {
+          offsets[b] = i + 1;
+          b++;
+        }
+      }
+    }
+    return offsets;
+  }
+
+  private static int lineBreaks(String text) {
+    int count = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (isLineBreak(text, i)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static boolean isLineBreak(String text, int i) {
+    char ch = text.charAt(i);
+    return ch == '\n' || (ch == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n'));
+  }
+
+  private static Token shift(Token token, int lines) {
+    List<Trivia> trivia = Lists.newArrayList();
+    for (Trivia trivium : token.getTrivia()) {
+      trivia.add(trivium.isComment() ? Trivia.createComment(shift(trivium.getToken(), lines)) : trivium);
+    }
+    return Token.builder(token)
+        .setLine(token.getLine() + lines)
+        .setTrivia(trivia)
+        .build();
+  }
+
+  /**
+   * Lines of a segment and their tokens. The tokens are kept with the lines they had when they were lexed, and shifted when
+   * the lines of the segment have moved.
+   */
+  private static final class Segment {
+
+    private final String text;
+    private final int lineBreaks;
+    private final LexerState startState;
+    private final int firstLine;
+    private final List<Token> tokens;
+    private final int tokensFirstLine;
+
+    private List<Token> shiftedTokens;
+    private int shiftedFirstLine;
+
+    /**
+     * @param firstLine line of the source at which the segment starts
+     * @param tokensFirstLine line of the tokens which is the first line of the segment
+     */
+    Segment(String text, int lineBreaks, LexerState startState, int firstLine, List<Token> tokens, int tokensFirstLine) {
+      this.text = text;
+      this.lineBreaks = lineBreaks;
+      this.startState = startState;
+      this.firstLine = firstLine;
+      this.tokens = tokens;
+      this.tokensFirstLine = tokensFirstLine;
+    }
+
+    List<Token> tokens(int line) {
+      if (line == tokensFirstLine) {
+        return tokens;
+      }
+      if (shiftedTokens == null || shiftedFirstLine != line) {
+        List<Token> shifted = Lists.newArrayListWithCapacity(tokens.size());
+        for (Token token : tokens) {
+          shifted.add(shift(token, line - tokensFirstLine));
+        }
+        shiftedTokens = shifted;
+        shiftedFirstLine = line;
+      }
+      return shiftedTokens;
+    }
+
+  }
+
+  /**
+   * Start of a line in a lexed text, with the number of tokens before it and the state of the lexer.
+   */
+  private static final class Boundary {
+
+    private final int line;
+    private final int tokens;
+    private final LexerState state;
+
+    /**
+     * @param state null if the line is not a possible start of a segment
+     */
+    Boundary(int line, int tokens, LexerState state) {
+      this.line = line;
+      this.tokens = tokens;
+      this.state = state;
+    }
+
+  }
+
+  private static final class Window {
+
+    private final List<Segment> segments;
+    private final Boundary end;
+
+    Window(List<Segment> segments, Boundary end) {
+      this.segments = segments;
+      this.end = end;
+    }
+
+    /**
+     * A \r at the end of the text can be the start of a \r\n with the next segment.
+     */
+    boolean convergesWith(Segment next, String text) {
+      return end != null && end.state != null && end.state.sameAs(next.startState) && !text.endsWith("\r");
+    }
+
+  }
+
+  /**
+   * Sees every character first, and records the lines which can start a segment. Consumes the sentinel which ends the text,
+   * after recording the state of the lexer at the end of the text.
+   */
+  private final class SnapshotChannel extends Channel<Lexer> {
+
+    private boolean sentinel;
+    private List<Boundary> boundaries;
+    private Boundary end;
+
+    private int lastLine;
+    private int lastBoundaryLine;
+    private int tokensAtLastComment;
+
+    void start(boolean sentinel) {
+      this.sentinel = sentinel;
+      boundaries = Lists.newArrayList();
+      end = null;
+      lastLine = 0;
+      lastBoundaryLine = 1;
+      tokensAtLastComment = -1;
+    }
+
+    @Override
+    public boolean consume(CodeReader code, Lexer output) {
+      List<Token> lexedTokens = output.getTokens();
+      if (code.peek() == '#') {
+        tokensAtLastComment = lexedTokens.size();
+      }
+      int line = code.getLinePosition();
+      if (code.getColumnPosition() != 0 || line == lastLine) {
+        return false;
+      }
+      lastLine = line;
+
+      boolean safe = isSafe(lexedTokens);
+      if (sentinel && code.peek() == SENTINEL && code.charAt(1) == EOF) {
+        end = new Boundary(line, lexedTokens.size(), safe ? lexerState.copy() : null);
+        code.pop();
+        return true;
+      }
+      if (safe && line - lastBoundaryLine >= linesPerSegment) {
+        boundaries.add(new Boundary(line, lexedTokens.size(), lexerState.copy()));
+        lastBoundaryLine = line;
+      }
+      return false;
+    }
+
+    private boolean isSafe(List<Token> lexedTokens) {
+      return lexerState.brackets == 0
+        && !lexerState.joined
+        && tokensAtLastComment != lexedTokens.size()
+        && (lexedTokens.isEmpty() || lexedTokens.get(lexedTokens.size() - 1).getType() == PythonTokenType.NEWLINE);
+    }
+
+  }
+
+  /**
+   * Tokens of all the segments, shifted to the current line of their segment when they are read.
+   */
+  private final class TokenList extends AbstractList<Token> {
+
+    @Override
+    public Token get(int index) {
+      if (index < 0 || index >= tokenCount) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + tokenCount);
+      }
+      int i = Arrays.binarySearch(segmentTokens, index);
+      int segment = i >= 0 ? lastWithTokens(i) : -i - 2;
+      return segments.get(segment).tokens(segmentFirstLines[segment]).get(index - segmentTokens[segment]);
+    }
+
+    @Override
+    public int size() {
+      return tokenCount;
+    }
+
+    /**
+     * Segments without tokens share the index of the first token of the next one.
+     */
+    private int lastWithTokens(int i) {
+      int result = i;
+      while (result + 1 < segmentTokens.length && segmentTokens[result + 1] == segmentTokens[i]) {
+        result++;
+      }
+      return result;
+    }
+
+  }
+
+}
@@ -19,6 +19,8 @@
  */
 package org.sonar.python.lexer;
 
+import com.google.common.collect.Iterables;
+
 import java.util.ArrayDeque;
 import java.util.Deque;
 
@@ -29,12 +31,46 @@ public class LexerState {
   int brackets;
   boolean joined;
 
+  private LexerState initialState;
+
   public void reset() {
     indentationStack.clear();
-    indentationStack.push(0);
+    if (initialState == null) {
+      indentationStack.push(0);
+
+      brackets = 0;
+      joined = false;
+    } else {
+      copyFrom(initialState);
+      initialState = null;
+    }
+  }
+
+  /**
+   * The next lexing starts from the given state instead of the state of the beginning of a file.
+   */
+  void resumeFrom(LexerState state) {
+    initialState = state;
+  }
+
+  LexerState copy() {
+    LexerState copy = new LexerState();
+    copy.copyFrom(this);
+    return copy;
+  }
+
+  private void copyFrom(LexerState state) {
+    indentationStack.clear();
+    indentationStack.addAll(state.indentationStack);
+    brackets = state.brackets;
+    joined = state.joined;
+  }
 
-    brackets = 0;
-    joined = false;
+  boolean sameAs(LexerState state) {
+    return brackets == state.brackets
+      && joined == state.joined
+      && indentationStack.size() == state.indentationStack.size()
+      && Iterables.elementsEqual(indentationStack, state.indentationStack);
   }
 
 }
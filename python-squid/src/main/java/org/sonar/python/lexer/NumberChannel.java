@@ -0,0 +1,192 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.lexer;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.python.api.PythonTokenType;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+/**
+ * http://docs.python.org/reference/lexical_analysis.html#integer-and-long-integer-literals
+ * http://docs.python.org/reference/lexical_analysis.html#floating-point-literals
+ * http://docs.python.org/reference/lexical_analysis.html#imaginary-literals
+ *
+ * Recognizes in a single scan the same literals as the following regular expressions, tried in this order,
+ * where EXP is [Ee][+-]?+[0-9_]++ :
+ * <ol>
+ *   <li>[0-9]++\.[0-9]*+EXP?+[jJ]?+</li>
+ *   <li>\.[0-9]++EXP?+[jJ]?+</li>
+ *   <li>[0-9]++EXP[jJ]?+</li>
+ *   <li>[0-9]++[jJ]</li>
+ *   <li>0[oO]?+[0-7]++[lL]?+</li>
+ *   <li>0[xX][0-9a-fA-F]++[lL]?+</li>
+ *   <li>0[bB][01]++[lL]?+</li>
+ *   <li>[1-9][0-9]*+[lL]?+</li>
+ *   <li>0++[lL]?+</li>
+ * </ol>
+ */
+public class NumberChannel extends Channel<Lexer> {
+
+  private final StringBuilder sb = new StringBuilder();
+
+  @Override
+  public boolean consume(CodeReader code, Lexer output) {
+    int length = match(code);
+    if (length == 0) {
+      return false;
+    }
+
+    int line = code.getLinePosition();
+    int column = code.getColumnPosition();
+    for (int i = 0; i < length; i++) {
+      sb.append((char) code.pop());
+    }
+    output.addToken(Token.builder()
+        .setLine(line)
+        .setColumn(column)
+        .setURI(output.getURI())
+        .setValueAndOriginalValue(sb.toString())
+        .setType(PythonTokenType.NUMBER)
+        .build());
+    sb.setLength(0);
+    return true;
+  }
+
+  /**
+   * @return the length of the number at the current position, 0 if there is none
+   */
+  private static int match(CodeReader code) {
+    char first = code.charAt(0);
+    if (first == '.') {
+      int end = digits(code, 1);
+      return end == 1 ? 0 : imaginary(code, optionalExponent(code, end));
+    }
+    if (!isDigit(first)) {
+      return 0;
+    }
+
+    int end = digits(code, 0);
+    char next = code.charAt(end);
+    if (next == '.') {
+      return imaginary(code, optionalExponent(code, digits(code, end + 1)));
+    }
+    int exponent = exponent(code, end);
+    if (exponent != -1) {
+      return imaginary(code, exponent);
+    }
+    if (next == 'j' || next == 'J') {
+      return end + 1;
+    }
+    if (first != '0') {
+      return longSuffix(code, end);
+    }
+    return prefixedInteger(code);
+  }
+
+  private static int prefixedInteger(CodeReader code) {
+    char second = code.charAt(1);
+    int start = second == 'o' || second == 'O' ? 2 : 1;
+    int end = start;
+    while (code.charAt(end) >= '0' && code.charAt(end) <= '7') {
+      end++;
+    }
+    if (end > start) {
+      return longSuffix(code, end);
+    }
+
+    if (second == 'x' || second == 'X') {
+      end = 2;
+      while (isHexDigit(code.charAt(end))) {
+        end++;
+      }
+      if (end > 2) {
+        return longSuffix(code, end);
+      }
+    } else if (second == 'b' || second == 'B') {
+      end = 2;
+      while (code.charAt(end) == '0' || code.charAt(end) == '1') {
+        end++;
+      }
+      if (end > 2) {
+        return longSuffix(code, end);
+      }
+    }
+
+    end = 1;
+    while (code.charAt(end) == '0') {
+      end++;
+    }
+    return longSuffix(code, end);
+  }
+
+  private static int digits(CodeReader code, int start) {
+    int end = start;
+    while (isDigit(code.charAt(end))) {
+      end++;
+    }
+    return end;
+  }
+
+  private static int optionalExponent(CodeReader code, int start) {
+    int exponent = exponent(code, start);
+    return exponent == -1 ? start : exponent;
+  }
+
+  /**
+   * @return the end of the exponent starting at the given index, -1 if there is none
+   */
+  private static int exponent(CodeReader code, int start) {
+    char ch = code.charAt(start);
+    if (ch != 'e' && ch != 'E') {
+      return -1;
+    }
+    int end = start + 1;
+    ch = code.charAt(end);
+    if (ch == '+' || ch == '-') {
+      end++;
+    }
+    int digitsStart = end;
+    while (isDigit(code.charAt(end)) || code.charAt(end) == '_') {
+      end++;
+    }
+    return end == digitsStart ? -1 : end;
+  }
+
+  private static int imaginary(CodeReader code, int end) {
+    char ch = code.charAt(end);
+    return ch == 'j' || ch == 'J' ? end + 1 : end;
+  }
+
+  private static int longSuffix(CodeReader code, int end) {
+    char ch = code.charAt(end);
+    return ch == 'l' || ch == 'L' ? end + 1 : end;
+  }
+
+  private static boolean isDigit(char ch) {
+    return ch >= '0' && ch <= '9';
+  }
+
+  private static boolean isHexDigit(char ch) {
+    return isDigit(ch) || (ch >= 'a' && ch <= 'f') || (ch >= 'A' && ch <= 'F');
+  }
+
+}
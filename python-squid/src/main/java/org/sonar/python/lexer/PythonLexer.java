@@ -20,77 +20,74 @@
 package org.sonar.python.lexer;
 
 import com.sonar.sslr.impl.Lexer;
-import com.sonar.sslr.impl.channel.BlackHoleChannel;
-import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
-import com.sonar.sslr.impl.channel.PunctuatorChannel;
 import com.sonar.sslr.impl.channel.UnknownCharacterChannel;
 import org.sonar.python.PythonConfiguration;
-import org.sonar.python.api.PythonKeyword;
 import org.sonar.python.api.PythonPunctuator;
-import org.sonar.python.api.PythonTokenType;
-
-import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.and;
-import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.commentRegexp;
-import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.o2n;
-import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
+import org.sonar.sslr.channel.Channel;
 
 public final class PythonLexer {
 
   private PythonLexer() {
   }
 
-  private static final String EXP = "([Ee][+-]?+[0-9_]++)";
-  private static final String BYTES_PREFIX = "(br|bR|b|Br|BR|B)";
-  private static final String IMAGINARY_SUFFIX = "(j|J)";
-  private static final String LONG_INTEGER_SUFFIX = "(l|L)";
+  private static final String WHITESPACES = " \t\u000B\f";
+  private static final String DIGITS = "0123456789";
+  private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
 
   public static Lexer create(PythonConfiguration conf) {
-    LexerState lexerState = new LexerState();
+    return create(conf, new LexerState(), null);
+  }
 
-    return Lexer.builder()
+  /**
+   * @param firstChannel channel which sees every character before the other channels, or null
+   */
+  static Lexer create(PythonConfiguration conf, LexerState lexerState, Channel<Lexer> firstChannel) {
+    Lexer.Builder builder = Lexer.builder()
         .withCharset(conf.getCharset())
-        .withFailIfNoChannelToConsumeOneCharacter(true)
+        .withFailIfNoChannelToConsumeOneCharacter(true);
+    if (firstChannel != null) {
+      builder.withChannel(firstChannel);
+    }
 
+    return builder
+        // line joining, newlines and indentation keep track of the state of the lexer, so they see every character
         .withChannel(new NewLineChannel(lexerState))
 
         .withChannel(new IndentationChannel(lexerState))
         .withPreprocessor(new IndentationPreprocessor(lexerState))
 
-        .withChannel(new BlackHoleChannel("\\s"))
-
-        // http://docs.python.org/reference/lexical_analysis.html#comments
-        .withChannel(commentRegexp("#[^\\n\\r]*+"))
-
-        // http://docs.python.org/reference/lexical_analysis.html#string-literals
-        .withChannel(new StringLiteralsChannel())
+        .withChannel(DispatchingChannel.builder()
+            .withChannel(new WhitespaceChannel(), WHITESPACES)
 
-        // http://docs.python.org/release/3.2/reference/lexical_analysis.html#string-and-bytes-literals
-        .withChannel(regexp(PythonTokenType.STRING, BYTES_PREFIX + "\'([^\'\\\\]*+(\\\\[\\s\\S])?+)*+\'"))
-        .withChannel(regexp(PythonTokenType.STRING, BYTES_PREFIX + "\"([^\"\\\\]*+(\\\\[\\s\\S])?+)*+\""))
+            // http://docs.python.org/reference/lexical_analysis.html#comments
+            .withChannel(new CommentChannel(), "#")
 
-        // http://docs.python.org/reference/lexical_analysis.html#floating-point-literals
-        // http://docs.python.org/reference/lexical_analysis.html#imaginary-literals
-        .withChannel(regexp(PythonTokenType.NUMBER, "[0-9]++\\.[0-9]*+" + EXP + "?+" + IMAGINARY_SUFFIX + "?+"))
-        .withChannel(regexp(PythonTokenType.NUMBER, "\\.[0-9]++" + EXP + "?+" + IMAGINARY_SUFFIX + "?+"))
-        .withChannel(regexp(PythonTokenType.NUMBER, "[0-9]++" + EXP + IMAGINARY_SUFFIX + "?+"))
-        .withChannel(regexp(PythonTokenType.NUMBER, "[0-9]++" + IMAGINARY_SUFFIX))
+            // http://docs.python.org/reference/lexical_analysis.html#string-literals
+            // http://docs.python.org/3/reference/lexical_analysis.html#string-and-bytes-literals
+            .withChannel(new StringLiteralsChannel(), "'\"uUbBrRfF")
 
-        // http://docs.python.org/reference/lexical_analysis.html#integer-and-long-integer-literals
-        .withChannel(regexp(PythonTokenType.NUMBER, "0[oO]?+[0-7]++" + LONG_INTEGER_SUFFIX + "?+"))
-        .withChannel(regexp(PythonTokenType.NUMBER, "0[xX][0-9a-fA-F]++" + LONG_INTEGER_SUFFIX + "?+"))
-        .withChannel(regexp(PythonTokenType.NUMBER, "0[bB][01]++" + LONG_INTEGER_SUFFIX + "?+"))
-        .withChannel(regexp(PythonTokenType.NUMBER, "[1-9][0-9]*+" + LONG_INTEGER_SUFFIX + "?+"))
-        .withChannel(regexp(PythonTokenType.NUMBER, "0++" + LONG_INTEGER_SUFFIX + "?+"))
+            // http://docs.python.org/reference/lexical_analysis.html#numeric-literals
+            .withChannel(new NumberChannel(), DIGITS + ".")
 
-        // http://docs.python.org/reference/lexical_analysis.html#identifiers
-        .withChannel(new IdentifierAndKeywordChannel(and("[a-zA-Z_]", o2n("\\w")), true, PythonKeyword.values()))
+            // http://docs.python.org/reference/lexical_analysis.html#identifiers
+            .withChannel(new IdentifierChannel(), LETTERS + "_")
 
-        // http://docs.python.org/reference/lexical_analysis.html#operators
-        // http://docs.python.org/reference/lexical_analysis.html#delimiters
-        .withChannel(new PunctuatorChannel(PythonPunctuator.values()))
+            // http://docs.python.org/reference/lexical_analysis.html#operators
+            // http://docs.python.org/reference/lexical_analysis.html#delimiters
+            .withChannel(new PythonPunctuatorChannel(), punctuatorsFirstChars())
 
-        .withChannel(new UnknownCharacterChannel())
+            .withChannel(new UnknownCharacterChannel())
+            .build())
 
         .build();
   }
+
+  private static String punctuatorsFirstChars() {
+    StringBuilder firstChars = new StringBuilder();
+    for (PythonPunctuator punctuator : PythonPunctuator.values()) {
+      firstChars.append(punctuator.getValue().charAt(0));
+    }
+    return firstChars.toString();
+  }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.lexer;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.python.api.PythonPunctuator;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+/**
+ * http://docs.python.org/reference/lexical_analysis.html#operators
+ * http://docs.python.org/reference/lexical_analysis.html#delimiters
+ *
+ * Walks a character trie built from {@link PythonPunctuator} to find the longest punctuator in a single pass.
+ */
+public class PythonPunctuatorChannel extends Channel<Lexer> {
+
+  private static final int ASCII = 128;
+
+  private final Node root = new Node();
+
+  public PythonPunctuatorChannel() {
+    for (PythonPunctuator punctuator : PythonPunctuator.values()) {
+      Node node = root;
+      for (char ch : punctuator.getValue().toCharArray()) {
+        node = node.child(ch);
+      }
+      node.punctuator = punctuator;
+    }
+  }
+
+  @Override
+  public boolean consume(CodeReader code, Lexer output) {
+    PythonPunctuator punctuator = null;
+    Node node = root;
+    int index = 0;
+    char ch = code.charAt(index);
+    while ((ch < ASCII) && (node.children != null) && (node.children[ch] != null)) {
+      node = node.children[ch];
+      index++;
+      if (node.punctuator != null) {
+        punctuator = node.punctuator;
+      }
+      ch = code.charAt(index);
+    }
+    if (punctuator == null) {
+      return false;
+    }
+
+    output.addToken(Token.builder()
+        .setLine(code.getLinePosition())
+        .setColumn(code.getColumnPosition())
+        .setURI(output.getURI())
+        .setValueAndOriginalValue(punctuator.getValue())
+        .setType(punctuator)
+        .build());
+    for (int i = 0; i < punctuator.getValue().length(); i++) {
+      code.pop();
+    }
+    return true;
+  }
+
+  private static final class Node {
+
+    private Node[] children;
+    private PythonPunctuator punctuator;
+
+    Node child(char ch) {
+      if (children == null) {
+        children = new Node[ASCII];
+      }
+      if (children[ch] == null) {
+        children[ch] = new Node();
+      }
+      return children[ch];
+    }
+
+  }
+
+}
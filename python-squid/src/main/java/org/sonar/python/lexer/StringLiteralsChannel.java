@@ -27,6 +27,7 @@ import org.sonar.python.api.PythonTokenType;
 
 /**
  * http://docs.python.org/reference/lexical_analysis.html#string-literals
+ * http://docs.python.org/3/reference/lexical_analysis.html#string-and-bytes-literals
  */
 public class StringLiteralsChannel extends Channel<Lexer> {
 
@@ -103,16 +104,25 @@ public class StringLiteralsChannel extends Channel<Lexer> {
     return true;
   }
 
+  /**
+   * Reads the optional prefix of a string or bytes literal, ignoring case:
+   * u, b and f alone or followed by r, and r alone or followed by b or f.
+   */
   private void readStringPrefix(CodeReader code) {
     ch = Character.toUpperCase(code.charAt(index));
-    if ((ch == 'U') || (ch == 'B')) {
+    if ((ch == 'U') || (ch == 'B') || (ch == 'F')) {
       index++;
-      ch = Character.toUpperCase(code.charAt(index));
-    }
-    if (ch == 'R') {
+      if (Character.toUpperCase(code.charAt(index)) == 'R') {
+        index++;
+      }
+    } else if (ch == 'R') {
       index++;
-      ch = code.charAt(index);
+      ch = Character.toUpperCase(code.charAt(index));
+      if ((ch == 'B') || (ch == 'F')) {
+        index++;
+      }
     }
+    ch = code.charAt(index);
   }
 
   private static boolean isLookingOnLongString(CodeReader code, char ch, int index) {
@@ -0,0 +1,46 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.lexer;
+
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+/**
+ * Skips spaces, tabs, form feeds and vertical tabs. Line terminators are handled by {@link NewLineChannel}.
+ */
+public class WhitespaceChannel extends Channel<Lexer> {
+
+  @Override
+  public boolean consume(CodeReader code, Lexer output) {
+    if (!isWhitespace(code.charAt(0))) {
+      return false;
+    }
+    do {
+      code.pop();
+    } while (isWhitespace(code.charAt(0)));
+    return true;
+  }
+
+  private static boolean isWhitespace(char ch) {
+    return (ch == ' ') || (ch == '\t') || (ch == '\u000B') || (ch == '\f');
+  }
+
+}
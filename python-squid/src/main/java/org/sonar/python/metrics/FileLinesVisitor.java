@@ -19,7 +19,6 @@
  */
 package org.sonar.python.metrics;
 
-import com.google.common.collect.Sets;
 import com.sonar.sslr.api.*;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.api.measures.CoreMetrics;
@@ -27,11 +26,12 @@ import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
+import org.sonar.python.PythonVisitorContext;
 import org.sonar.python.api.PythonMetric;
 import org.sonar.python.api.PythonTokenType;
 
+import java.util.BitSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Visitor that computes {@link CoreMetrics#NCLOC_DATA_KEY} and {@link CoreMetrics#COMMENT_LINES_DATA_KEY} metrics used by the DevCockpit.
@@ -41,8 +41,8 @@ public class FileLinesVisitor extends SquidAstVisitor<Grammar> implements AstAnd
   private final Project project;
   private final FileLinesContextFactory fileLinesContextFactory;
 
-  private final Set<Integer> linesOfCode = Sets.newHashSet();
-  private final Set<Integer> linesOfComments = Sets.newHashSet();
+  private final BitSet linesOfCode = new BitSet();
+  private final BitSet linesOfComments = new BitSet();
 
   public FileLinesVisitor(Project project, FileLinesContextFactory fileLinesContextFactory) {
     this.project = project;
@@ -56,16 +56,13 @@ public class FileLinesVisitor extends SquidAstVisitor<Grammar> implements AstAnd
 
     if (token.getType() != PythonTokenType.DEDENT && token.getType() != PythonTokenType.INDENT && token.getType() != PythonTokenType.NEWLINE) {
       /* Handle all the lines of the token */
-      String[] tokenLines = token.getValue().split("\n", -1);
-      for (int line = token.getLine(); line < token.getLine() + tokenLines.length; line++) {
-        linesOfCode.add(line);
-      }
+      linesOfCode.set(token.getLine(), token.getLine() + PythonVisitorContext.tokenLines(getContext(), token).count());
     }
 
     List<Trivia> trivias = token.getTrivia();
     for (Trivia trivia : trivias) {
       if (trivia.isComment()) {
-        linesOfComments.add(trivia.getToken().getLine());
+        linesOfComments.set(trivia.getToken().getLine());
       }
     }
   }
@@ -77,8 +74,8 @@ public class FileLinesVisitor extends SquidAstVisitor<Grammar> implements AstAnd
 
     int fileLength = getContext().peekSourceCode().getInt(PythonMetric.LINES);
     for (int line = 1; line <= fileLength; line++) {
-      fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, linesOfCode.contains(line) ? 1 : 0);
-      fileLinesContext.setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, line, linesOfComments.contains(line) ? 1 : 0);
+      fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, linesOfCode.get(line) ? 1 : 0);
+      fileLinesContext.setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, line, linesOfComments.get(line) ? 1 : 0);
     }
     fileLinesContext.save();
 
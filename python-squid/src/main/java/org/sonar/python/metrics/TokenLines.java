@@ -0,0 +1,91 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Lines spanned by the value of a token, found in a single pass without regular expression.
+ * Line breaks are "\n", "\r\n" and "\r", as for the lexer.
+ * The visitors of a scan share the lines of the token being visited through {@link org.sonar.python.PythonVisitorContext}.
+ */
+public final class TokenLines {
+
+  // start and end of each line, the end being the index of the line break or the length of the value for the last line
+  private final int[] bounds;
+
+  private TokenLines(int[] bounds) {
+    this.bounds = bounds;
+  }
+
+  public static TokenLines of(String value) {
+    int length = value.length();
+    int[] bounds = new int[2];
+    int size = 0;
+    int lineStart = 0;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == '\n' || c == '\r') {
+        if (size + 2 > bounds.length) {
+          bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[size++] = lineStart;
+        bounds[size++] = i;
+        if (c == '\r' && i + 1 < length && value.charAt(i + 1) == '\n') {
+          i++;
+        }
+        lineStart = i + 1;
+      }
+    }
+    if (size + 2 > bounds.length) {
+      bounds = Arrays.copyOf(bounds, size + 2);
+    }
+    bounds[size++] = lineStart;
+    bounds[size++] = length;
+    return new TokenLines(size == bounds.length ? bounds : Arrays.copyOf(bounds, size));
+  }
+
+  /**
+   * @return number of lines spanned by the value, that is 1 plus the number of its line breaks
+   */
+  public int count() {
+    return bounds.length / 2;
+  }
+
+  /**
+   * @param line index of a line of the value, from 0 to {@link #count()} - 1
+   * @return index of the first character of the line in the value
+   */
+  public int lineStart(int line) {
+    return bounds[2 * line];
+  }
+
+  /**
+   * @return index of the line break which ends the line, or the length of the value for the last line
+   */
+  public int lineEnd(int line) {
+    return bounds[2 * line + 1];
+  }
+
+  public int lineLength(int line) {
+    return lineEnd(line) - lineStart(line);
+  }
+
+}
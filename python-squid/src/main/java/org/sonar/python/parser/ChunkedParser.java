@@ -0,0 +1,221 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.impl.Parser;
+import org.sonar.python.PythonConfiguration;
+import org.sonar.python.api.PythonKeyword;
+import org.sonar.python.api.PythonPunctuator;
+import org.sonar.python.api.PythonTokenType;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Splits the tokens of a large file into chunks of top-level statements, parses the chunks in parallel as files of their own,
+ * and puts the statements of all the chunks under a single FILE_INPUT node, so that the tree is the same as the tree built
+ * by a sequential parse. Files which are too small to be split are parsed sequentially. The chunks are parsed by an executor
+ * shared by all the parsers of the configuration, and a syntax error is reported from the first chunk which has one.
+ */
+class ChunkedParser extends LexingParser {
+
+  /**
+   * Files with less tokens than two chunks of this size are not split.
+   */
+  static final int MIN_CHUNK_TOKENS = 10000;
+
+  /**
+   * Keywords which continue the compound statement of the previous line, so that they cannot start a chunk.
+   */
+  private static final Set<TokenType> CONTINUATION_KEYWORDS = ImmutableSet.<TokenType>of(
+    PythonKeyword.ELSE, PythonKeyword.ELIF, PythonKeyword.EXCEPT, PythonKeyword.FINALLY);
+
+  private final ExecutorService executor;
+  private final int threads;
+  private final int minChunkTokens;
+
+  // parsers are not thread-safe, each thread of the executor parses its chunks with a parser of its own
+  private final ThreadLocal<Parser<Grammar>> chunkParsers;
+
+  ChunkedParser(Grammar grammar, PythonConfiguration conf, ExecutorService executor, int threads) {
+    this(grammar, conf, executor, threads, MIN_CHUNK_TOKENS);
+  }
+
+  /**
+   * @param executor parses the chunks, it is not shut down by the parser
+   * @param threads number of threads of the executor, files are split into twice as many chunks
+   */
+  ChunkedParser(final Grammar grammar, PythonConfiguration conf, ExecutorService executor, int threads, int minChunkTokens) {
+    super(grammar, conf);
+    this.executor = executor;
+    this.threads = threads;
+    this.minChunkTokens = minChunkTokens;
+    this.chunkParsers = new ThreadLocal<Parser<Grammar>>() {
+      @Override
+      protected Parser<Grammar> initialValue() {
+        return new ChunkParser(grammar);
+      }
+    };
+  }
+
+  @Override
+  public AstNode parse(List<Token> tokens) {
+    List<List<Token>> chunks = split(tokens, threads * 2, minChunkTokens);
+    if (chunks.size() < 2) {
+      return super.parse(tokens);
+    }
+    return merge(parseInParallel(chunks));
+  }
+
+  /**
+   * @return chunks of at least minChunkTokens tokens, each ending with an EOF token
+   */
+  static List<List<Token>> split(List<Token> tokens, int maxChunks, int minChunkTokens) {
+    List<List<Token>> chunks = Lists.newArrayList();
+    int chunkTokens = Math.max(minChunkTokens, tokens.size() / Math.max(1, maxChunks));
+    if (tokens.size() < 2 * chunkTokens) {
+      chunks.add(tokens);
+      return chunks;
+    }
+
+    int chunkStart = 0;
+    int depth = 0;
+    boolean lineStart = true;
+    boolean decorator = false;
+    for (int i = 0; i < tokens.size() - 1; i++) {
+      Token token = tokens.get(i);
+      TokenType type = token.getType();
+      if (type == PythonTokenType.INDENT) {
+        depth++;
+      } else if (type == PythonTokenType.DEDENT) {
+        depth--;
+      } else {
+        if (lineStart && depth == 0 && type != PythonTokenType.NEWLINE) {
+          if (i - chunkStart >= chunkTokens && tokens.size() - i >= chunkTokens && canStartChunk(type, decorator)) {
+            chunks.add(chunk(tokens, chunkStart, i));
+            chunkStart = i;
+          }
+          decorator = type == PythonPunctuator.AT;
+        }
+        lineStart = type == PythonTokenType.NEWLINE;
+      }
+    }
+    chunks.add(tokens.subList(chunkStart, tokens.size()));
+    return chunks;
+  }
+
+  /**
+   * A top-level statement can start a new chunk unless it belongs to the previous statement: a clause of a compound statement,
+   * or the statement decorated by the previous line.
+   */
+  private static boolean canStartChunk(TokenType type, boolean afterDecorator) {
+    return !afterDecorator && !CONTINUATION_KEYWORDS.contains(type);
+  }
+
+  private static List<Token> chunk(List<Token> tokens, int from, int to) {
+    List<Token> chunk = Lists.newArrayList(tokens.subList(from, to));
+    Token next = tokens.get(to);
+    chunk.add(Token.builder()
+        .setType(GenericTokenType.EOF)
+        .setValueAndOriginalValue("EOF")
+        .setURI(next.getURI())
+        .setLine(next.getLine())
+        .setColumn(next.getColumn())
+        .build());
+    return chunk;
+  }
+
+  /**
+   * @throws RecognitionException the syntax error of the first chunk which has one, the other chunks are cancelled
+   */
+  private List<AstNode> parseInParallel(List<List<Token>> chunks) {
+    List<Future<AstNode>> futures = Lists.newArrayList();
+    try {
+      for (final List<Token> chunk : chunks) {
+        futures.add(executor.submit(new Callable<AstNode>() {
+          @Override
+          public AstNode call() {
+            return chunkParsers.get().parse(chunk);
+          }
+        }));
+      }
+      List<AstNode> trees = Lists.newArrayList();
+      for (Future<AstNode> future : futures) {
+        trees.add(future.get());
+      }
+      return trees;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while parsing", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      for (Future<AstNode> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Moves the children of the FILE_INPUT node of each chunk under a single FILE_INPUT node, dropping the EOF tokens added by
+   * {@link #chunk(List, int, int)}.
+   */
+  private static AstNode merge(List<AstNode> trees) {
+    AstNode first = trees.get(0);
+    AstNode root = new AstNode(first.getType(), first.getName(), first.getToken());
+    AstNode last = trees.get(trees.size() - 1);
+    for (AstNode tree : trees) {
+      for (AstNode child : Lists.newArrayList(tree.getChildren())) {
+        if (tree == last || child.getType() != GenericTokenType.EOF) {
+          root.addChild(child);
+        }
+      }
+    }
+    return root;
+  }
+
+  /**
+   * Parses the tokens of the chunks, which have already been lexed, so it has no lexer.
+   */
+  private static final class ChunkParser extends Parser<Grammar> {
+
+    ChunkParser(Grammar grammar) {
+      super(grammar);
+      setRootRule(grammar.getRootRule());
+    }
+
+  }
+
+}
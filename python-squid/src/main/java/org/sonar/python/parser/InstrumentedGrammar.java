@@ -0,0 +1,218 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.matcher.RuleDefinition;
+import org.sonar.python.api.PythonGrammar;
+import org.sonar.sslr.internal.vm.FirstOfExpression;
+import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.NativeExpression;
+import org.sonar.sslr.internal.vm.SequenceExpression;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Copy of the Python grammar whose rules report their calls, memo hits, failures and time to a {@link RuleMatches}.
+ * The SSLR parser has no hook on the rules it tries, so each rule R is rewritten with expressions of the SSLR parsing machine:
+ * <pre>
+ *   R      = firstOf(sequence(call(R), R_BODY, succeed(R)), fail(R))
+ *   R_BODY = sequence(evaluate(R), expression of R)
+ * </pre>
+ * R_BODY is memoized instead of R, so that a call of R which hits the memo is counted without evaluating R_BODY, and R_BODY is
+ * skipped from the syntax tree, which is the same as with the original grammar.
+ * As the grammars of {@link PythonParser}, the instrumented grammar of a memoization strategy is built once and shared by all the
+ * parsers: the events are reported to the matches which the parsing thread has {@link #bind(RuleMatches) bound}.
+ * <p>
+ * The expressions of the parsing machine are internal to SSLR and may change in any version, so this class is the only one which
+ * uses them, and it refuses to build a grammar with another version of SSLR than the one it has been written for.
+ */
+final class InstrumentedGrammar {
+
+  static final String SUPPORTED_SSLR_VERSION = "1.20";
+
+  private static final String SSLR_POM_PROPERTIES = "/META-INF/maven/org.codehaus.sonar.sslr/sslr-core/pom.properties";
+
+  private static final ConcurrentMap<MemoizationStrategy, Grammar> GRAMMARS = new ConcurrentHashMap<MemoizationStrategy, Grammar>();
+
+  private static final ThreadLocal<RuleMatches> CURRENT_MATCHES = new ThreadLocal<RuleMatches>();
+
+  private InstrumentedGrammar() {
+  }
+
+  static Grammar get(MemoizationStrategy memoization) {
+    Grammar grammar = GRAMMARS.get(memoization);
+    if (grammar == null) {
+      Grammar built = build(memoization);
+      grammar = GRAMMARS.putIfAbsent(memoization, built);
+      if (grammar == null) {
+        grammar = built;
+      }
+    }
+    return grammar;
+  }
+
+  /**
+   * Reports the events of the rules matched by the current thread to the given matches, until {@link #unbind()}.
+   */
+  static void bind(RuleMatches matches) {
+    CURRENT_MATCHES.set(matches);
+  }
+
+  static void unbind() {
+    CURRENT_MATCHES.remove();
+  }
+
+  private static Grammar build(MemoizationStrategy memoization) {
+    checkSslrVersion(sslrVersion());
+    Grammar grammar = PythonGrammar.createWithoutMemoization().build();
+    for (PythonGrammar key : PythonGrammar.values()) {
+      RuleDefinition rule = (RuleDefinition) grammar.rule(key);
+      RuleDefinition body = new RuleDefinition(key.name() + "_BODY");
+      body.setExpression(new SequenceExpression(new Evaluate(key), rule.getExpression()));
+      body.skip();
+      if (memoization.isMemoized(key)) {
+        body.enableMemoization();
+      }
+      rule.setExpression(new FirstOfExpression(
+        new SequenceExpression(new Call(key), body, new Succeed(key)),
+        new Fail(key)));
+    }
+    return grammar;
+  }
+
+  static void checkSslrVersion(String version) {
+    if (!SUPPORTED_SSLR_VERSION.equals(version)) {
+      throw new IllegalStateException("The parser profiling relies on the internals of SSLR " + SUPPORTED_SSLR_VERSION
+        + " and cannot run with SSLR " + version);
+    }
+  }
+
+  /**
+   * Version of the SSLR parsing machine on the classpath, or null when it is unknown.
+   */
+  static String sslrVersion() {
+    URL url = Machine.class.getResource(SSLR_POM_PROPERTIES);
+    if (url == null) {
+      Package sslrPackage = Machine.class.getPackage();
+      return sslrPackage == null ? null : sslrPackage.getImplementationVersion();
+    }
+    try {
+      Properties properties = new Properties();
+      properties.load(new StringReader(Resources.toString(url, Charsets.ISO_8859_1)));
+      return properties.getProperty("version");
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read the version of SSLR from " + url, e);
+    }
+  }
+
+  /**
+   * Reports an event of a rule without consuming any token.
+   */
+  private abstract static class RuleEvent extends NativeExpression {
+
+    protected final PythonGrammar rule;
+
+    RuleEvent(PythonGrammar rule) {
+      this.rule = rule;
+    }
+
+    protected static RuleMatches matches() {
+      RuleMatches matches = CURRENT_MATCHES.get();
+      if (matches == null) {
+        throw new IllegalStateException("No rule matches are bound to the parsing thread");
+      }
+      return matches;
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + " " + rule;
+    }
+
+  }
+
+  private static final class Call extends RuleEvent {
+
+    Call(PythonGrammar rule) {
+      super(rule);
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      matches().call(rule);
+      machine.jump(1);
+    }
+
+  }
+
+  private static final class Evaluate extends RuleEvent {
+
+    Evaluate(PythonGrammar rule) {
+      super(rule);
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      matches().evaluate(rule);
+      machine.jump(1);
+    }
+
+  }
+
+  private static final class Succeed extends RuleEvent {
+
+    Succeed(PythonGrammar rule) {
+      super(rule);
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      matches().succeed(rule);
+      machine.jump(1);
+    }
+
+  }
+
+  /**
+   * Last alternative of the rule, which fails once the failure is reported.
+   */
+  private static final class Fail extends RuleEvent {
+
+    Fail(PythonGrammar rule) {
+      super(rule);
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      matches().fail(rule);
+      machine.backtrack();
+    }
+
+  }
+
+}
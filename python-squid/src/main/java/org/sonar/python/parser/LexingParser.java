@@ -0,0 +1,76 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.LexerException;
+import com.sonar.sslr.impl.Parser;
+import org.sonar.python.PythonConfiguration;
+import org.sonar.python.lexer.PythonLexer;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Parser which runs the lexer itself, so that subclasses can work on the tokens before or around parsing.
+ * Each parse has a lexer of its own, because a lexer keeps the tokens of the last source it has lexed: once a file has been parsed,
+ * the syntax tree is the only thing which keeps its tokens reachable, and both can be collected as soon as the tree has been visited,
+ * instead of staying in memory until the next file.
+ */
+class LexingParser extends Parser<Grammar> {
+
+  private final PythonConfiguration conf;
+
+  LexingParser(Grammar grammar, PythonConfiguration conf) {
+    super(grammar);
+    setRootRule(grammar.getRootRule());
+    this.conf = conf;
+  }
+
+  @Override
+  public AstNode parse(File file) {
+    return parse(lex(file));
+  }
+
+  @Override
+  public AstNode parse(String source) {
+    return parse(lex(source));
+  }
+
+  protected List<Token> lex(File file) {
+    try {
+      return PythonLexer.create(conf).lex(file);
+    } catch (LexerException e) {
+      throw new RecognitionException(e);
+    }
+  }
+
+  protected List<Token> lex(String source) {
+    try {
+      return PythonLexer.create(conf).lex(source);
+    } catch (LexerException e) {
+      throw new RecognitionException(e);
+    }
+  }
+
+}
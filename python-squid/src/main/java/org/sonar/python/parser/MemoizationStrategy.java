@@ -0,0 +1,116 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.matcher.RuleDefinition;
+import org.sonar.python.api.PythonGrammar;
+import org.sonar.sslr.grammar.LexerfulGrammarBuilder;
+
+import java.util.Set;
+
+/**
+ * Which rules of the Python grammar have their matches memoized. Memoization avoids parsing the same tokens again
+ * when the parser backtracks, but the memo table is the biggest consumer of heap while a large file is parsed.
+ */
+public final class MemoizationStrategy {
+
+  public static final MemoizationStrategy ALL = new MemoizationStrategy(true, ImmutableSet.<PythonGrammar>of());
+  public static final MemoizationStrategy NONE = new MemoizationStrategy(false, ImmutableSet.<PythonGrammar>of());
+
+  private final boolean allRules;
+  private final Set<PythonGrammar> rules;
+
+  private MemoizationStrategy(boolean allRules, Set<PythonGrammar> rules) {
+    this.allRules = allRules;
+    this.rules = rules;
+  }
+
+  public static MemoizationStrategy of(PythonGrammar... rules) {
+    return new MemoizationStrategy(false, ImmutableSet.copyOf(rules));
+  }
+
+  /**
+   * @param value "all", "none" or a comma-separated list of rules of {@link PythonGrammar}, for instance "TEST,OR_TEST,ATOM"
+   */
+  public static MemoizationStrategy parse(String value) {
+    String trimmed = value.trim();
+    if ("all".equalsIgnoreCase(trimmed)) {
+      return ALL;
+    }
+    if ("none".equalsIgnoreCase(trimmed)) {
+      return NONE;
+    }
+    ImmutableSet.Builder<PythonGrammar> rules = ImmutableSet.builder();
+    for (String rule : Splitter.on(',').trimResults().omitEmptyStrings().split(trimmed)) {
+      try {
+        rules.add(PythonGrammar.valueOf(rule.toUpperCase()));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Unknown rule '" + rule + "' in the memoization strategy '" + value + "'.", e);
+      }
+    }
+    return new MemoizationStrategy(false, rules.build());
+  }
+
+  public boolean isMemoized(PythonGrammar rule) {
+    return allRules || rules.contains(rule);
+  }
+
+  Grammar build() {
+    LexerfulGrammarBuilder b = PythonGrammar.createWithoutMemoization();
+    if (allRules) {
+      return b.buildWithMemoizationOfMatchesForAllRules();
+    }
+    Grammar grammar = b.build();
+    for (PythonGrammar rule : rules) {
+      ((RuleDefinition) grammar.rule(rule)).enableMemoization();
+    }
+    return grammar;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof MemoizationStrategy)) {
+      return false;
+    }
+    MemoizationStrategy other = (MemoizationStrategy) obj;
+    return allRules == other.allRules && rules.equals(other.rules);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * rules.hashCode() + (allRules ? 1 : 0);
+  }
+
+  @Override
+  public String toString() {
+    if (allRules) {
+      return "all";
+    }
+    return rules.isEmpty() ? "none" : Joiner.on(',').join(rules);
+  }
+
+}
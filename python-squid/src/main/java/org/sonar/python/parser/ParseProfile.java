@@ -0,0 +1,244 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.python.api.PythonGrammar;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Time spent to lex and parse each file and, for each rule of the grammar, the number of calls, of memo hits and of failed
+ * matches, and the time spent in the rule including the rules it calls, per file and for all the files. The rules are counted
+ * by an {@link InstrumentedGrammar}, so rules which backtrack show many failures and a high time.
+ *
+ * Parsers of several threads can share the same profile.
+ */
+public class ParseProfile {
+
+  private static final int TOP_RULES = 10;
+
+  private final List<FileProfile> files = Lists.newArrayList();
+  private final Map<String, RuleProfile> rules = Maps.newHashMap();
+
+  void add(String path, int tokens, long lexingNanos, long parsingNanos, RuleMatches matches) {
+    Map<String, RuleProfile> fileRules = Maps.newHashMap();
+    for (PythonGrammar key : PythonGrammar.values()) {
+      if (matches.getCalls(key) > 0) {
+        RuleProfile rule = new RuleProfile(key.toString());
+        rule.add(matches.getCalls(key), matches.getMemoHits(key), matches.getFailures(key), matches.getNanos(key));
+        fileRules.put(rule.name, rule);
+      }
+    }
+    FileProfile file = new FileProfile(path, tokens, lexingNanos, parsingNanos, fileRules);
+    synchronized (this) {
+      files.add(file);
+      for (RuleProfile rule : fileRules.values()) {
+        RuleProfile total = rules.get(rule.name);
+        if (total == null) {
+          total = new RuleProfile(rule.name);
+          rules.put(rule.name, total);
+        }
+        total.add(rule.calls, rule.memoHits, rule.failures, rule.nanos);
+      }
+    }
+    fileProfiled(file);
+  }
+
+  /**
+   * Called after each file is parsed, does nothing by default.
+   */
+  protected void fileProfiled(FileProfile file) {
+  }
+
+  public synchronized List<FileProfile> getFiles() {
+    return Lists.newArrayList(files);
+  }
+
+  public synchronized Map<String, RuleProfile> getRules() {
+    return ImmutableMap.copyOf(rules);
+  }
+
+  /**
+   * Table of the files, slowest first, followed by the table of the rules, slowest first.
+   */
+  public synchronized String report() {
+    StringBuilder sb = new StringBuilder();
+    long lexingNanos = 0;
+    long parsingNanos = 0;
+    long tokens = 0;
+    for (FileProfile file : files) {
+      lexingNanos += file.lexingNanos;
+      parsingNanos += file.parsingNanos;
+      tokens += file.tokens;
+    }
+    sb.append(format("Parse profile of %d files: %d tokens, %d ms of lexing, %d ms of parsing%n%n", files.size(), tokens, millis(lexingNanos), millis(parsingNanos)));
+
+    List<FileProfile> sortedFiles = Lists.newArrayList(files);
+    Collections.sort(sortedFiles, new Comparator<FileProfile>() {
+      @Override
+      public int compare(FileProfile f1, FileProfile f2) {
+        return Long.valueOf(f2.parsingNanos).compareTo(f1.parsingNanos);
+      }
+    });
+    sb.append(format("%10s %12s %12s  %s%n", "Tokens", "Lexing (ms)", "Parsing (ms)", "File"));
+    for (FileProfile file : sortedFiles) {
+      sb.append(format("%10d %12d %12d  %s%n", file.tokens, millis(file.lexingNanos), millis(file.parsingNanos), file.path));
+    }
+    sb.append(format("%n"));
+    appendRules(sb, rules, Integer.MAX_VALUE);
+    return sb.toString();
+  }
+
+  static void appendRules(StringBuilder sb, Map<String, RuleProfile> rules, int limit) {
+    List<RuleProfile> sortedRules = Lists.newArrayList(rules.values());
+    Collections.sort(sortedRules, new Comparator<RuleProfile>() {
+      @Override
+      public int compare(RuleProfile r1, RuleProfile r2) {
+        int result = Long.valueOf(r2.nanos).compareTo(r1.nanos);
+        return result == 0 ? r1.name.compareTo(r2.name) : result;
+      }
+    });
+    sb.append(format("%12s %12s %12s %10s %10s  %s%n", "Calls", "Failures", "Memo hits", "Hit ratio", "Time (ms)", "Rule"));
+    for (RuleProfile rule : sortedRules.subList(0, Math.min(limit, sortedRules.size()))) {
+      sb.append(format("%12d %12d %12d %9.1f%% %10d  %s%n", rule.calls, rule.failures, rule.memoHits, 100 * rule.getMemoHitRatio(), millis(rule.nanos), rule.name));
+    }
+  }
+
+  private static long millis(long nanos) {
+    return nanos / 1000000;
+  }
+
+  private static String format(String format, Object... args) {
+    return String.format(Locale.ENGLISH, format, args);
+  }
+
+  public static final class FileProfile {
+
+    private final String path;
+    private final int tokens;
+    private final long lexingNanos;
+    private final long parsingNanos;
+    private final Map<String, RuleProfile> rules;
+
+    FileProfile(String path, int tokens, long lexingNanos, long parsingNanos, Map<String, RuleProfile> rules) {
+      this.path = path;
+      this.tokens = tokens;
+      this.lexingNanos = lexingNanos;
+      this.parsingNanos = parsingNanos;
+      this.rules = ImmutableMap.copyOf(rules);
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public int getTokens() {
+      return tokens;
+    }
+
+    public long getLexingNanos() {
+      return lexingNanos;
+    }
+
+    public long getParsingNanos() {
+      return parsingNanos;
+    }
+
+    public Map<String, RuleProfile> getRules() {
+      return rules;
+    }
+
+    /**
+     * Times of the file, followed by the slowest rules.
+     */
+    public String report() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(format("%s: %d tokens, %d ms of lexing, %d ms of parsing%n", path, tokens, millis(lexingNanos), millis(parsingNanos)));
+      appendRules(sb, rules, TOP_RULES);
+      return sb.toString();
+    }
+
+  }
+
+  public static final class RuleProfile {
+
+    private final String name;
+    private long calls;
+    private long memoHits;
+    private long failures;
+    private long nanos;
+
+    RuleProfile(String name) {
+      this.name = name;
+    }
+
+    private void add(long calls, long memoHits, long failures, long nanos) {
+      this.calls += calls;
+      this.memoHits += memoHits;
+      this.failures += failures;
+      this.nanos += nanos;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Number of times the parser tried to match the rule, memo hits included.
+     */
+    public long getCalls() {
+      return calls;
+    }
+
+    /**
+     * Number of calls answered by the memo, without matching the rule again. Always 0 for rules which are not memoized.
+     */
+    public long getMemoHits() {
+      return memoHits;
+    }
+
+    public double getMemoHitRatio() {
+      return calls == 0 ? 0 : (double) memoHits / calls;
+    }
+
+    /**
+     * Number of calls which did not match, so that the parser backtracked.
+     */
+    public long getFailures() {
+      return failures;
+    }
+
+    /**
+     * Time spent in the rule, including the rules it calls.
+     */
+    public long getNanos() {
+      return nanos;
+    }
+
+  }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import org.sonar.python.PythonConfiguration;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Lexes and then parses each file with the {@link InstrumentedGrammar} of the memoization strategy, and records into a
+ * {@link ParseProfile} the time of both steps and the matches of the rules. The tokens are parsed in one piece, even when the configuration has several
+ * parsing threads. The profile of a file is recorded even when it has a syntax error.
+ */
+class ProfilingParser extends LexingParser {
+
+  private static final String SOURCE_PATH = "<source>";
+
+  private final RuleMatches matches = new RuleMatches();
+  private final ParseProfile profile;
+
+  private ProfilingParser(Grammar grammar, PythonConfiguration conf, ParseProfile profile) {
+    super(grammar, conf);
+    this.profile = profile;
+  }
+
+  static ProfilingParser create(PythonConfiguration conf) {
+    return new ProfilingParser(InstrumentedGrammar.get(conf.getMemoization()), conf, conf.getParseProfile());
+  }
+
+  @Override
+  public AstNode parse(File file) {
+    long start = System.nanoTime();
+    return parse(file.getPath(), lex(file), start);
+  }
+
+  @Override
+  public AstNode parse(String source) {
+    long start = System.nanoTime();
+    return parse(SOURCE_PATH, lex(source), start);
+  }
+
+  private AstNode parse(String path, List<Token> tokens, long start) {
+    long lexed = System.nanoTime();
+    matches.reset();
+    InstrumentedGrammar.bind(matches);
+    try {
+      return parse(tokens);
+    } finally {
+      InstrumentedGrammar.unbind();
+      profile.add(path, tokens.size(), lexed - start, System.nanoTime() - lexed, matches);
+    }
+  }
+
+}
@@ -22,17 +22,68 @@ package org.sonar.python.parser;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.impl.Parser;
 import org.sonar.python.PythonConfiguration;
-import org.sonar.python.api.PythonGrammar;
-import org.sonar.python.lexer.PythonLexer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public final class PythonParser {
 
+  private static final ConcurrentMap<MemoizationStrategy, Grammar> GRAMMARS = new ConcurrentHashMap<MemoizationStrategy, Grammar>();
+
   private PythonParser() {
   }
 
+  /**
+   * Creates a parser backed by the grammar shared by the whole JVM for the memoization strategy of the configuration.
+   * Parsers are not thread-safe, but they are cheap to create: each thread should create its own.
+   * When the configuration is {@link PythonConfiguration#isTokensOnly() tokens only}, the files are lexed but not parsed.
+   * Otherwise, when it has a {@link ParseProfile}, the files are parsed in one piece with an instrumented copy of the grammar
+   * and the parser records the matches of each rule into the profile. When it has several parsing threads and a parsing executor,
+   * the top-level statements of large files are parsed in parallel.
+   */
   public static Parser<Grammar> create(PythonConfiguration conf) {
-    return Parser.builder(PythonGrammar.create().build())
-      .withLexer(PythonLexer.create(conf)).build();
+    if (conf.isTokensOnly()) {
+      return new TokenParser(grammar(conf.getMemoization()), conf);
+    } else if (conf.getParseProfile() != null) {
+      return ProfilingParser.create(conf);
+    } else if (conf.getParsingThreads() > 1 && conf.getParsingExecutor() != null) {
+      return new ChunkedParser(grammar(conf.getMemoization()), conf, conf.getParsingExecutor(), conf.getParsingThreads());
+    }
+    return new LexingParser(grammar(conf.getMemoization()), conf);
+  }
+
+  /**
+   * The grammar is built on first use and then shared by all the parsers, so its rules must not be modified (for instance mocked).
+   */
+  public static Grammar grammar() {
+    return SharedGrammar.INSTANCE;
+  }
+
+  /**
+   * @see #grammar()
+   */
+  public static Grammar grammar(MemoizationStrategy memoization) {
+    if (MemoizationStrategy.ALL.equals(memoization)) {
+      return grammar();
+    }
+    Grammar grammar = GRAMMARS.get(memoization);
+    if (grammar == null) {
+      Grammar built = memoization.build();
+      grammar = GRAMMARS.putIfAbsent(memoization, built);
+      if (grammar == null) {
+        grammar = built;
+      }
+    }
+    return grammar;
+  }
+
+  private static final class SharedGrammar {
+
+    private static final Grammar INSTANCE = MemoizationStrategy.ALL.build();
+
+    private SharedGrammar() {
+    }
+
   }
 
 }
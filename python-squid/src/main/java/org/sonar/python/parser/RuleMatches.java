@@ -0,0 +1,94 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import org.sonar.python.api.PythonGrammar;
+
+import java.util.Arrays;
+
+/**
+ * Matches of the rules of an {@link InstrumentedGrammar} during one parse. Not thread-safe: each {@link ProfilingParser} has its own,
+ * which it binds to its thread while parsing.
+ */
+final class RuleMatches {
+
+  private static final int RULES = PythonGrammar.values().length;
+
+  private final long[] calls = new long[RULES];
+  private final long[] evaluations = new long[RULES];
+  private final long[] failures = new long[RULES];
+  private final long[] nanos = new long[RULES];
+
+  // start times of the rules being matched, innermost last
+  private long[] starts = new long[64];
+  private int depth;
+
+  void reset() {
+    Arrays.fill(calls, 0);
+    Arrays.fill(evaluations, 0);
+    Arrays.fill(failures, 0);
+    Arrays.fill(nanos, 0);
+    depth = 0;
+  }
+
+  void call(PythonGrammar rule) {
+    calls[rule.ordinal()]++;
+    if (depth == starts.length) {
+      starts = Arrays.copyOf(starts, depth * 2);
+    }
+    starts[depth++] = System.nanoTime();
+  }
+
+  /**
+   * The expression of the rule is evaluated, so the rule has not been found in the memo.
+   */
+  void evaluate(PythonGrammar rule) {
+    evaluations[rule.ordinal()]++;
+  }
+
+  void succeed(PythonGrammar rule) {
+    nanos[rule.ordinal()] += System.nanoTime() - starts[--depth];
+  }
+
+  void fail(PythonGrammar rule) {
+    failures[rule.ordinal()]++;
+    nanos[rule.ordinal()] += System.nanoTime() - starts[--depth];
+  }
+
+  long getCalls(PythonGrammar rule) {
+    return calls[rule.ordinal()];
+  }
+
+  long getMemoHits(PythonGrammar rule) {
+    return calls[rule.ordinal()] - evaluations[rule.ordinal()];
+  }
+
+  long getFailures(PythonGrammar rule) {
+    return failures[rule.ordinal()];
+  }
+
+  /**
+   * Time spent in the rule, including the rules it calls.
+   */
+  long getNanos(PythonGrammar rule) {
+    return nanos[rule.ordinal()];
+  }
+
+}
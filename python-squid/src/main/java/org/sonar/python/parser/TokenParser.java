@@ -0,0 +1,50 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import org.sonar.python.PythonConfiguration;
+import org.sonar.python.api.PythonGrammar;
+
+import java.util.List;
+
+/**
+ * Lexes the files without parsing them: the tree is a FILE_INPUT node with one child per token, EOF included.
+ * Visitors of tokens and comments, and visitors subscribed to token types, see the same tokens as with a full parse,
+ * whereas visitors subscribed to the rules of the grammar are never called.
+ */
+class TokenParser extends LexingParser {
+
+  TokenParser(Grammar grammar, PythonConfiguration conf) {
+    super(grammar, conf);
+  }
+
+  @Override
+  public AstNode parse(List<Token> tokens) {
+    AstNode root = new AstNode(PythonGrammar.FILE_INPUT, PythonGrammar.FILE_INPUT.name(), tokens.isEmpty() ? null : tokens.get(0));
+    for (Token token : tokens) {
+      root.addChild(new AstNode(token));
+    }
+    return root;
+  }
+
+}
@@ -21,15 +21,21 @@ package org.sonar.python;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
 import org.junit.Test;
 import org.sonar.python.api.PythonMetric;
+import org.sonar.python.metrics.TokenLines;
 import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.squidbridge.api.SourceProject;
 import org.sonar.squidbridge.indexer.QueryByType;
 
 import java.io.File;
+import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -43,6 +49,19 @@ public class PythonAstScannerTest {
     assertThat(project.getInt(PythonMetric.FILES)).isEqualTo(2);
   }
 
+  @Test
+  public void token_lines_are_shared_by_the_visitors() {
+    final List<TokenLines> first = Lists.newArrayList();
+    final List<TokenLines> second = Lists.newArrayList();
+    PythonAstScanner.scanSingleFile(new File("src/test/resources/metrics/lines.py"), new TokenLinesVisitor(first), new TokenLinesVisitor(second));
+
+    assertThat(first).isNotEmpty();
+    assertThat(first).hasSize(second.size());
+    for (int i = 0; i < first.size(); i++) {
+      assertThat(first.get(i)).isSameAs(second.get(i));
+    }
+  }
+
   @Test
   public void comments() {
     SourceFile file = PythonAstScanner.scanSingleFile(new File("src/test/resources/metrics/comments.py"));
@@ -86,4 +105,30 @@ public class PythonAstScannerTest {
     assertThat(file.getInt(PythonMetric.COMPLEXITY)).isEqualTo(10);
   }
 
+  @Test
+  public void tokens_only() {
+    PythonConfiguration conf = new PythonConfiguration(Charsets.UTF_8);
+    conf.setTokensOnly(true);
+    AstScanner<Grammar> scanner = PythonAstScanner.create(conf);
+    scanner.scanFiles(ImmutableList.of(new File("src/test/resources/metrics/functions.py")));
+    SourceFile file = (SourceFile) scanner.getIndex().search(new QueryByType(SourceFile.class)).iterator().next();
+    assertThat(file.getInt(PythonMetric.LINES_OF_CODE)).isEqualTo(3);
+    assertThat(file.getInt(PythonMetric.FUNCTIONS)).isEqualTo(0);
+    assertThat(file.getInt(PythonMetric.COMPLEXITY)).isEqualTo(0);
+  }
+
+  private static class TokenLinesVisitor extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+
+    private final List<TokenLines> lines;
+
+    TokenLinesVisitor(List<TokenLines> lines) {
+      this.lines = lines;
+    }
+
+    public void visitToken(Token token) {
+      lines.add(PythonVisitorContext.tokenLines(getContext(), token));
+    }
+
+  }
+
 }
@@ -0,0 +1,172 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.lexer;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import org.junit.Test;
+import org.sonar.python.PythonConfiguration;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class IncrementalLexerTest {
+
+  private static final String SOURCE = "# header\n"
+    + "import os\n"
+    + "\n"
+    + "def f(a, b=[1,\n"
+    + "    2]):\n"
+    + "  # comment\n"
+    + "  return a + \\\n"
+    + "    b\n"
+    + "\n"
+    + "class C:\n"
+    + "  '''doc\n"
+    + "  string'''\n"
+    + "  def g(self):\n"
+    + "    if self:\n"
+    + "      pass\n"
+    + "    return 1\n"
+    + "x = f(1)\n";
+
+  private static final int[] LINES_PER_SEGMENT = {1, 2, IncrementalLexer.SEGMENT_LINES};
+
+  private final PythonConfiguration conf = new PythonConfiguration(Charsets.UTF_8);
+  private final Lexer lexer = PythonLexer.create(conf);
+
+  @Test
+  public void should_lex_as_python_lexer() {
+    for (int linesPerSegment : LINES_PER_SEGMENT) {
+      IncrementalLexer incrementalLexer = new IncrementalLexer(conf, linesPerSegment);
+      assertThat(describe(incrementalLexer.lex(SOURCE))).isEqualTo(describe(lexer.lex(SOURCE)));
+    }
+  }
+
+  @Test
+  public void should_update_as_python_lexer() {
+    String[] versions = {
+      SOURCE,
+      SOURCE.replace("import os", "import sys"),
+      SOURCE.replace("      pass\n", "      pass\n      pass\n"),
+      SOURCE.replace("x = f(1)", "x = f(1, 2)"),
+      SOURCE.replace("  string'''", "  string"),
+      SOURCE.replace("b=[1,", "b=(1,"),
+      SOURCE.replace("  # comment\n", ""),
+      SOURCE.replace("\n\nclass", "\nclass"),
+      SOURCE.replace("    if self:\n      pass\n", ""),
+      SOURCE.replace("import os\n", "import os\n# comment\n"),
+      SOURCE.replace("return 1", "return \\\n 1"),
+      SOURCE.replace("import os", "import 'os"),
+      "",
+      SOURCE,
+      SOURCE + "y = 2\n",
+      "z = 3\n" + SOURCE,
+      SOURCE.replace("\n", "\r\n"),
+      SOURCE.replace("\n", "\r"),
+      SOURCE
+    };
+    for (int linesPerSegment : LINES_PER_SEGMENT) {
+      IncrementalLexer incrementalLexer = new IncrementalLexer(conf, linesPerSegment);
+      for (String version : versions) {
+        for (String next : versions) {
+          incrementalLexer.lex(version);
+          assertThat(describe(update(incrementalLexer, version, next))).as(version + "\n=>\n" + next).isEqualTo(describe(lexer.lex(next)));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void should_follow_successive_edits() {
+    String alphabet = "\n\r \\#'\"()[]:ax1";
+    Random random = new Random(42);
+    for (int linesPerSegment : LINES_PER_SEGMENT) {
+      IncrementalLexer incrementalLexer = new IncrementalLexer(conf, linesPerSegment);
+      String source = SOURCE;
+      incrementalLexer.lex(source);
+      for (int i = 0; i < 500; i++) {
+        int offset = random.nextInt(source.length() + 1);
+        int removed = Math.min(random.nextInt(3), source.length() - offset);
+        String inserted = random.nextBoolean() ? "" : String.valueOf(alphabet.charAt(random.nextInt(alphabet.length())));
+        String next = source.substring(0, offset) + inserted + source.substring(offset + removed);
+        assertThat(describe(incrementalLexer.update(offset, removed, inserted))).as(source + "\n=>\n" + next).isEqualTo(describe(lexer.lex(next)));
+        source = next;
+      }
+    }
+  }
+
+  @Test
+  public void should_relex_only_around_change() {
+    String source = Strings.repeat("def f():\n  x = 1\n  return x\n", 1000);
+    IncrementalLexer incrementalLexer = new IncrementalLexer(conf);
+    incrementalLexer.lex(source);
+    assertThat(incrementalLexer.getRelexedTokens()).isGreaterThan(10000);
+
+    // at most the two segments around the change, of about 5 tokens per line
+    int maxRelexedTokens = 2 * 5 * IncrementalLexer.SEGMENT_LINES + 10;
+    int offset = source.indexOf("x = 1", source.length() / 2) + "x = 1".length();
+    String changed = source.substring(0, offset) + "2" + source.substring(offset);
+    assertThat(describe(incrementalLexer.update(offset, 0, "2"))).isEqualTo(describe(lexer.lex(changed)));
+    assertThat(incrementalLexer.getRelexedTokens()).isLessThan(maxRelexedTokens);
+
+    offset = changed.indexOf('\n', offset) + 1;
+    String inserted = changed.substring(0, offset) + "  y = 2\n" + changed.substring(offset);
+    assertThat(describe(incrementalLexer.update(offset, 0, "  y = 2\n"))).isEqualTo(describe(lexer.lex(inserted)));
+    assertThat(incrementalLexer.getRelexedTokens()).isLessThan(maxRelexedTokens);
+
+    assertThat(incrementalLexer.update(offset, 0, "")).hasSize(lexer.lex(inserted).size());
+    assertThat(incrementalLexer.getRelexedTokens()).isEqualTo(0);
+  }
+
+  /**
+   * Replaces the range which differs between the two versions.
+   */
+  private static List<Token> update(IncrementalLexer incrementalLexer, String previous, String next) {
+    int prefix = 0;
+    int max = Math.min(previous.length(), next.length());
+    while (prefix < max && previous.charAt(prefix) == next.charAt(prefix)) {
+      prefix++;
+    }
+    int suffix = 0;
+    while (suffix < max - prefix && previous.charAt(previous.length() - 1 - suffix) == next.charAt(next.length() - 1 - suffix)) {
+      suffix++;
+    }
+    return incrementalLexer.update(prefix, previous.length() - prefix - suffix, next.substring(prefix, next.length() - suffix));
+  }
+
+  private static List<String> describe(List<Token> tokens) {
+    List<String> descriptions = Lists.newArrayList();
+    for (Token token : tokens) {
+      descriptions.add(token.getLine() + ":" + token.getColumn() + " " + token.getType() + " [" + token.getOriginalValue() + "]");
+      for (Trivia trivia : token.getTrivia()) {
+        descriptions.add("  trivia " + trivia.getToken().getLine() + ":" + trivia.getToken().getColumn() + " [" + trivia.getToken().getOriginalValue() + "]");
+      }
+    }
+    return descriptions;
+  }
+
+}
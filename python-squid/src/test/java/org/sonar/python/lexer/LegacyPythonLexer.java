@@ -0,0 +1,436 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.lexer;
+
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.PreprocessorAction;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.channel.BlackHoleChannel;
+import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
+import com.sonar.sslr.impl.channel.PunctuatorChannel;
+import com.sonar.sslr.impl.channel.UnknownCharacterChannel;
+import org.sonar.python.PythonConfiguration;
+import org.sonar.python.api.PythonKeyword;
+import org.sonar.python.api.PythonPunctuator;
+import org.sonar.python.api.PythonTokenType;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.and;
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.commentRegexp;
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.o2n;
+import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
+
+/**
+ * The channel chain of {@link PythonLexer} before the introduction of {@link DispatchingChannel} and of the hand-written
+ * channels. Tokens of the current lexer are compared against the ones of this one. The channels and the state shared
+ * with the main code at that time are frozen here as nested classes, so that changing them cannot change the reference.
+ */
+final class LegacyPythonLexer {
+
+  private LegacyPythonLexer() {
+  }
+
+  private static final String EXP = "([Ee][+-]?+[0-9_]++)";
+  private static final String BYTES_PREFIX = "(br|bR|b|Br|BR|B)";
+  private static final String IMAGINARY_SUFFIX = "(j|J)";
+  private static final String LONG_INTEGER_SUFFIX = "(l|L)";
+
+  public static Lexer create(PythonConfiguration conf) {
+    LexerState lexerState = new LexerState();
+
+    return Lexer.builder()
+        .withCharset(conf.getCharset())
+        .withFailIfNoChannelToConsumeOneCharacter(true)
+
+        .withChannel(new NewLineChannel(lexerState))
+
+        .withChannel(new IndentationChannel(lexerState))
+        .withPreprocessor(new IndentationPreprocessor(lexerState))
+
+        .withChannel(new BlackHoleChannel("\\s"))
+
+        // http://docs.python.org/reference/lexical_analysis.html#comments
+        .withChannel(commentRegexp("#[^\\n\\r]*+"))
+
+        // http://docs.python.org/reference/lexical_analysis.html#string-literals
+        .withChannel(new StringLiteralsChannel())
+
+        // http://docs.python.org/release/3.2/reference/lexical_analysis.html#string-and-bytes-literals
+        .withChannel(regexp(PythonTokenType.STRING, BYTES_PREFIX + "\'([^\'\\\\]*+(\\\\[\\s\\S])?+)*+\'"))
+        .withChannel(regexp(PythonTokenType.STRING, BYTES_PREFIX + "\"([^\"\\\\]*+(\\\\[\\s\\S])?+)*+\""))
+
+        // http://docs.python.org/reference/lexical_analysis.html#floating-point-literals
+        // http://docs.python.org/reference/lexical_analysis.html#imaginary-literals
+        .withChannel(regexp(PythonTokenType.NUMBER, "[0-9]++\\.[0-9]*+" + EXP + "?+" + IMAGINARY_SUFFIX + "?+"))
+        .withChannel(regexp(PythonTokenType.NUMBER, "\\.[0-9]++" + EXP + "?+" + IMAGINARY_SUFFIX + "?+"))
+        .withChannel(regexp(PythonTokenType.NUMBER, "[0-9]++" + EXP + IMAGINARY_SUFFIX + "?+"))
+        .withChannel(regexp(PythonTokenType.NUMBER, "[0-9]++" + IMAGINARY_SUFFIX))
+
+        // http://docs.python.org/reference/lexical_analysis.html#integer-and-long-integer-literals
+        .withChannel(regexp(PythonTokenType.NUMBER, "0[oO]?+[0-7]++" + LONG_INTEGER_SUFFIX + "?+"))
+        .withChannel(regexp(PythonTokenType.NUMBER, "0[xX][0-9a-fA-F]++" + LONG_INTEGER_SUFFIX + "?+"))
+        .withChannel(regexp(PythonTokenType.NUMBER, "0[bB][01]++" + LONG_INTEGER_SUFFIX + "?+"))
+        .withChannel(regexp(PythonTokenType.NUMBER, "[1-9][0-9]*+" + LONG_INTEGER_SUFFIX + "?+"))
+        .withChannel(regexp(PythonTokenType.NUMBER, "0++" + LONG_INTEGER_SUFFIX + "?+"))
+
+        // http://docs.python.org/reference/lexical_analysis.html#identifiers
+        .withChannel(new IdentifierAndKeywordChannel(and("[a-zA-Z_]", o2n("\\w")), true, PythonKeyword.values()))
+
+        // http://docs.python.org/reference/lexical_analysis.html#operators
+        // http://docs.python.org/reference/lexical_analysis.html#delimiters
+        .withChannel(new PunctuatorChannel(PythonPunctuator.values()))
+
+        .withChannel(new UnknownCharacterChannel())
+
+        .build();
+  }
+
+  /**
+   * http://docs.python.org/reference/lexical_analysis.html#explicit-line-joining
+   * http://docs.python.org/reference/lexical_analysis.html#implicit-line-joining
+   * http://docs.python.org/reference/lexical_analysis.html#blank-lines
+   */
+  private static final class NewLineChannel extends Channel<Lexer> {
+
+    private final LexerState lexerState;
+
+    NewLineChannel(LexerState lexerState) {
+      this.lexerState = lexerState;
+    }
+
+    @Override
+    public boolean consume(CodeReader code, Lexer output) {
+      char ch = (char) code.peek();
+      switch (ch) {
+        case '[':
+        case '(':
+        case '{':
+          lexerState.brackets++;
+          break;
+        case ']':
+        case ')':
+        case '}':
+          lexerState.brackets--;
+          break;
+        default:
+          break;
+      }
+
+      if ((ch == '\\') && isNewLine(code.charAt(1))) {
+        // Explicit line joining
+        code.pop();
+        joinLines(code);
+        return true;
+      }
+
+      if (isNewLine(ch)) {
+        if (isImplicitLineJoining()) {
+          // Implicit line joining
+          joinLines(code);
+          return true;
+        }
+
+        if (output.getTokens().isEmpty() || (output.getTokens().get(output.getTokens().size() - 1).getType() == PythonTokenType.NEWLINE)) {
+          // Blank line
+          consumeEOL(code);
+          return true;
+        }
+
+        // NEWLINE token
+        output.addToken(Token.builder()
+            .setLine(code.getLinePosition())
+            .setColumn(code.getColumnPosition())
+            .setURI(output.getURI())
+            .setType(PythonTokenType.NEWLINE)
+            .setValueAndOriginalValue("\n")
+            .setGeneratedCode(true)
+            .build());
+        consumeEOL(code);
+        return true;
+      }
+
+      return false;
+    }
+
+    private void joinLines(CodeReader code) {
+      while (Character.isWhitespace(code.peek())) {
+        code.pop();
+      }
+      lexerState.joined = true;
+    }
+
+    private static void consumeEOL(CodeReader code) {
+      if ((code.charAt(0) == '\r') && (code.charAt(1) == '\n')) {
+        // \r\n
+        code.pop();
+        code.pop();
+      } else {
+        // \r or \n
+        code.pop();
+      }
+    }
+
+    private static boolean isNewLine(char ch) {
+      return (ch == '\n') || (ch == '\r');
+    }
+
+    private boolean isImplicitLineJoining() {
+      return lexerState.brackets > 0;
+    }
+
+  }
+
+  /**
+   * http://docs.python.org/reference/lexical_analysis.html#indentation
+   */
+  private static final class IndentationChannel extends Channel<Lexer> {
+
+    private final StringBuilder buffer = new StringBuilder();
+    private final LexerState lexerState;
+
+    IndentationChannel(LexerState lexerState) {
+      this.lexerState = lexerState;
+    }
+
+    @Override
+    public boolean consume(CodeReader code, Lexer lexer) {
+      if (lexerState.joined) {
+        lexerState.joined = false;
+        return false;
+      }
+
+      if (code.getColumnPosition() != 0) {
+        return false;
+      }
+
+      int line = code.getLinePosition();
+      int column = code.getColumnPosition();
+
+      int index = 0;
+      char ch = code.charAt(index);
+      while ((ch == ' ') || (ch == '\t')) {
+        index++;
+        ch = code.charAt(index);
+      }
+
+      if ((ch == '\n') || (ch == '\r') || (ch == '#') || (ch == (char) -1)) {
+        // Blank line
+        return false;
+      }
+
+      buffer.setLength(0);
+      int indentationLevel = 0;
+      for (int i = 0; i < index; i++) {
+        buffer.append((char) code.pop());
+        indentationLevel++;
+      }
+
+      if (indentationLevel > lexerState.indentationStack.peek()) {
+        lexerState.indentationStack.push(indentationLevel);
+        lexer.addToken(Token.builder()
+            .setType(PythonTokenType.INDENT)
+            .setValueAndOriginalValue(buffer.toString())
+            .setURI(lexer.getURI())
+            .setLine(line)
+            .setColumn(column)
+            .build());
+      } else if (indentationLevel < lexerState.indentationStack.peek()) {
+        while (indentationLevel < lexerState.indentationStack.peek()) {
+          lexerState.indentationStack.pop();
+          lexer.addToken(Token.builder()
+              .setType(PythonTokenType.DEDENT)
+              .setValueAndOriginalValue(buffer.toString())
+              .setURI(lexer.getURI())
+              .setLine(line)
+              .setColumn(column)
+              .build());
+        }
+      }
+
+      return buffer.length() != 0;
+    }
+
+  }
+
+  /**
+   * http://docs.python.org/reference/lexical_analysis.html#indentation
+   */
+  private static final class IndentationPreprocessor extends Preprocessor {
+
+    private final LexerState lexerState;
+
+    IndentationPreprocessor(LexerState lexerState) {
+      this.lexerState = lexerState;
+    }
+
+    @Override
+    public void init() {
+      lexerState.reset();
+    }
+
+    @Override
+    public PreprocessorAction process(List<Token> tokens) {
+      Token token = tokens.get(0);
+      if (token.getType() == GenericTokenType.EOF) {
+        if (lexerState.indentationStack.isEmpty()) {
+          return PreprocessorAction.NO_OPERATION;
+        }
+
+        List<Token> tokensToInject = Lists.newArrayList();
+        while (lexerState.indentationStack.peek() > 0) {
+          lexerState.indentationStack.pop();
+          tokensToInject.add(Token.builder(token)
+              .setURI(token.getURI())
+              .setType(PythonTokenType.DEDENT)
+              .setLine(token.getLine())
+              .setColumn(token.getColumn())
+              .setValueAndOriginalValue("")
+              .build());
+        }
+        return new PreprocessorAction(0, Collections.EMPTY_LIST, tokensToInject);
+      }
+      return PreprocessorAction.NO_OPERATION;
+    }
+
+  }
+
+  /**
+   * http://docs.python.org/reference/lexical_analysis.html#string-literals
+   */
+  private static final class StringLiteralsChannel extends Channel<Lexer> {
+
+    private static final char EOF = (char) -1;
+
+    private final StringBuilder sb = new StringBuilder();
+
+    private int index;
+    private char ch;
+
+    @Override
+    public boolean consume(CodeReader code, Lexer output) {
+      int line = code.getLinePosition();
+      int column = code.getColumnPosition();
+      index = 0;
+      readStringPrefix(code);
+      if ((ch != '\'') && (ch != '\"')) {
+        return false;
+      }
+      if (!read(code)) {
+        return false;
+      }
+      for (int i = 0; i < index; i++) {
+        sb.append((char) code.pop());
+      }
+      output.addToken(Token.builder()
+          .setLine(line)
+          .setColumn(column)
+          .setURI(output.getURI())
+          .setValueAndOriginalValue(sb.toString())
+          .setType(PythonTokenType.STRING)
+          .build());
+      sb.setLength(0);
+      return true;
+    }
+
+    private boolean read(CodeReader code) {
+      if (isLookingOnLongString(code, ch, index)) {
+        return readLongString(code);
+      } else {
+        return readString(code);
+      }
+    }
+
+    private boolean readString(CodeReader code) {
+      index++;
+      while (code.charAt(index) != ch) {
+        if (code.charAt(index) == EOF) {
+          return false;
+        }
+        if (code.charAt(index) == '\\') {
+          // escape
+          index++;
+        }
+        index++;
+      }
+      index++;
+      return true;
+    }
+
+    private boolean readLongString(CodeReader code) {
+      index += 3;
+      while (!isLookingOnLongString(code, ch, index)) {
+        if (code.charAt(index) == EOF) {
+          return false;
+        }
+        if (code.charAt(index) == '\\') {
+          // escape
+          index++;
+        }
+        index++;
+      }
+      index += 3;
+      return true;
+    }
+
+    private void readStringPrefix(CodeReader code) {
+      ch = Character.toUpperCase(code.charAt(index));
+      if ((ch == 'U') || (ch == 'B')) {
+        index++;
+        ch = Character.toUpperCase(code.charAt(index));
+      }
+      if (ch == 'R') {
+        index++;
+        ch = code.charAt(index);
+      }
+    }
+
+    private static boolean isLookingOnLongString(CodeReader code, char ch, int index) {
+      return (code.charAt(index) == ch) && (code.charAt(index + 1) == ch) && (code.charAt(index + 2) == ch);
+    }
+
+  }
+
+  private static final class LexerState {
+
+    final Deque<Integer> indentationStack = new ArrayDeque<Integer>();
+
+    int brackets;
+    boolean joined;
+
+    public void reset() {
+      indentationStack.clear();
+      indentationStack.push(0);
+
+      brackets = 0;
+      joined = false;
+    }
+
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.lexer;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonar.python.PythonConfiguration;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * Checks that {@link PythonLexer} produces exactly the same tokens as the original chain of channels.
+ */
+public class PythonLexerDifferentialTest {
+
+  private static final String[] SNIPPETS = {
+    "x = 0 + 00 + 0L + 0o17 + 0O17l + 017 + 0x1F + 0XaBL + 0b101 + 0B1l + 123 + 123L + 1_000\n",
+    "y = 1. + 1.5 + .5 + 1e10 + 1E-5 + 1.5e+3 + .5e1 + 1j + 1.5J + .5j + 1e5j + 0e0 + 09.5 + 0j + 00.e1\n",
+    "z = 1.__class__, 1..real, 0x, 0b2, 0o8, 1e, 1ej, 1_2.3_4e5_6j\n",
+    "s = 'a' \"b\" u'c' U\"d\" r'e' R\"f\" ur'g' UR\"h\" b'i' B\"j\" br'k' bR\"l\" Br'm' BR\"n\"\n",
+    "t = '''long\n'string''' + \"\"\"other\n\"\"\" + b'''bytes''' + 'esc\\'aped' + b'esc\\\"aped\\\\'\n",
+    "u = bu'w' + Ub'v' + bytes'x'\n",
+    "if a <= b and c != d or e <> f:\n\tpass  # comment\n  \n    # indented comment\nelse:\n  x **= 2; y //= 3; z >>= 1; w <<= 4; v @ w\n",
+    "def f(a, b=[1,\n  2], *args, **kwargs):\n  return a \\\n    + b\n",
+    "`x` $ ? é = 1\n\u000b\f\n",
+    "'unterminated\n\"also\n",
+  };
+
+  private final Lexer lexer = PythonLexer.create(new PythonConfiguration(Charsets.UTF_8));
+  private final Lexer legacyLexer = LegacyPythonLexer.create(new PythonConfiguration(Charsets.UTF_8));
+
+  @Test
+  public void snippets() {
+    for (String snippet : SNIPPETS) {
+      assertSameTokens(snippet, lexer.lex(snippet), legacyLexer.lex(snippet));
+    }
+  }
+
+  @Test
+  public void files() {
+    for (File file : FileUtils.listFiles(new File("src/test/resources/"), new String[] {"py"}, true)) {
+      assertSameTokens(file.getPath(), lexer.lex(file), legacyLexer.lex(file));
+    }
+  }
+
+  private static void assertSameTokens(String source, List<Token> actual, List<Token> expected) {
+    assertThat(describe(actual)).as(source).isEqualTo(describe(expected));
+  }
+
+  private static List<String> describe(List<Token> tokens) {
+    List<String> descriptions = Lists.newArrayList();
+    for (Token token : tokens) {
+      descriptions.add(describe(token));
+      for (Trivia trivia : token.getTrivia()) {
+        descriptions.add("  trivia " + describe(trivia.getToken()));
+      }
+    }
+    return descriptions;
+  }
+
+  private static String describe(Token token) {
+    return token.getLine() + ":" + token.getColumn() + " " + token.getType() + " [" + token.getOriginalValue() + "]";
+  }
+
+}
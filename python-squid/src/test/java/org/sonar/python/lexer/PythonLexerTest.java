@@ -111,6 +111,24 @@ public class PythonLexerTest {
   public void bytes_literal() {
     assertThat(lexer.lex("br'hello world'"), hasToken("br'hello world'", PythonTokenType.STRING));
     assertThat(lexer.lex("br\"hello world\""), hasToken("br\"hello world\"", PythonTokenType.STRING));
+
+    assertThat("3.3 bytesprefix", lexer.lex("rb'hello world'"), hasToken("rb'hello world'", PythonTokenType.STRING));
+    assertThat("3.3 bytesprefix", lexer.lex("Rb\"hello world\""), hasToken("Rb\"hello world\"", PythonTokenType.STRING));
+
+    assertThat("escaped single quote", lexer.lex("b'\\''"), hasToken("b'\\''", PythonTokenType.STRING));
+    assertThat("not a prefix", lexer.lex("bu'x'"), hasToken("bu", GenericTokenType.IDENTIFIER));
+    assertThat("unterminated", lexer.lex("b'"), hasToken("b", GenericTokenType.IDENTIFIER));
+  }
+
+  /**
+   * http://docs.python.org/3/reference/lexical_analysis.html#formatted-string-literals
+   */
+  @Test
+  public void formatted_string_literals() {
+    assertThat(lexer.lex("f'{x}'"), hasToken("f'{x}'", PythonTokenType.STRING));
+    assertThat(lexer.lex("F\"{x}\""), hasToken("F\"{x}\"", PythonTokenType.STRING));
+    assertThat(lexer.lex("fr'{x}'"), hasToken("fr'{x}'", PythonTokenType.STRING));
+    assertThat(lexer.lex("Rf'''\n{x}'''"), hasToken("Rf'''\n{x}'''", PythonTokenType.STRING));
   }
 
   /**
@@ -177,6 +195,22 @@ public class PythonLexerTest {
   public void identifiers_and_keywords() {
     assertThat(lexer.lex("True"), hasToken("True", PythonKeyword.TRUE));
     assertThat(lexer.lex("identifier"), hasToken("identifier", GenericTokenType.IDENTIFIER));
+
+    for (PythonKeyword keyword : PythonKeyword.values()) {
+      assertThat(lexer.lex(keyword.getValue()), hasToken(keyword.getValue(), keyword));
+      assertThat(lexer.lex(keyword.getValue() + "_"), hasToken(keyword.getValue() + "_", GenericTokenType.IDENTIFIER));
+    }
+    assertThat("case sensitive", lexer.lex("true"), hasToken("true", GenericTokenType.IDENTIFIER));
+    assertThat("same first and last characters", lexer.lex("ff"), hasToken("ff", GenericTokenType.IDENTIFIER));
+    assertThat(lexer.lex("_private2"), hasToken("_private2", GenericTokenType.IDENTIFIER));
+  }
+
+  @Test
+  public void keywords_without_perfect_hash() {
+    assertThat(IdentifierChannel.hasPerfectHash()).isTrue();
+    assertThat(IdentifierChannel.findMultiplier(new String[] {"elif", "else", "exec"}, 16)).isGreaterThan(0);
+    // same first character, last character and length
+    assertThat(IdentifierChannel.findMultiplier(new String[] {"case", "cose"}, 16)).isEqualTo(0);
   }
 
   /**
@@ -187,6 +221,14 @@ public class PythonLexerTest {
   public void operators_and_delimiters() {
     assertThat(lexer.lex("<<"), hasToken("<<", PythonPunctuator.LEFT_OP));
     assertThat(lexer.lex("+="), hasToken("+=", PythonPunctuator.PLUS_ASSIGN));
+
+    for (PythonPunctuator punctuator : PythonPunctuator.values()) {
+      assertThat(lexer.lex("a" + punctuator.getValue() + "b"), hasToken(punctuator.getValue(), punctuator));
+    }
+    assertThat("longest match", lexer.lex("x**=y"), hasToken("**=", PythonPunctuator.MUL_MUL_ASSIGN));
+    assertThat("longest match", lexer.lex("x//y"), hasToken("//", PythonPunctuator.DIV_DIV));
+    assertThat("longest match", lexer.lex("x<<==y"), allOf(hasToken("<<=", PythonPunctuator.LEFT_ASSIGN), hasToken("=", PythonPunctuator.ASSIGN)));
+    assertThat("no prefix punctuator", lexer.lex("!"), hasToken("!", GenericTokenType.UNKNOWN_CHAR));
   }
 
   /**
@@ -0,0 +1,55 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.metrics;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TokenLinesTest {
+
+  @Test
+  public void count() {
+    assertThat(TokenLines.of("").count()).isEqualTo(1);
+    assertThat(TokenLines.of("foo").count()).isEqualTo(1);
+    assertThat(TokenLines.of("'''a\nb\r\nc\rd'''").count()).isEqualTo(4);
+    assertThat(TokenLines.of("a\n").count()).isEqualTo(2);
+    assertThat(TokenLines.of("a\r").count()).isEqualTo(2);
+    assertThat(TokenLines.of("\r\n\r\n").count()).isEqualTo(3);
+    assertThat(TokenLines.of("\n\n\n\n\n").count()).isEqualTo(6);
+  }
+
+  @Test
+  public void lines() {
+    TokenLines lines = TokenLines.of("ab\r\ncde\rf\n");
+    assertThat(lines.count()).isEqualTo(4);
+    assertThat(lines.lineStart(0)).isEqualTo(0);
+    assertThat(lines.lineEnd(0)).isEqualTo(2);
+    assertThat(lines.lineStart(1)).isEqualTo(4);
+    assertThat(lines.lineEnd(1)).isEqualTo(7);
+    assertThat(lines.lineLength(1)).isEqualTo(3);
+    assertThat(lines.lineStart(2)).isEqualTo(8);
+    assertThat(lines.lineEnd(2)).isEqualTo(9);
+    assertThat(lines.lineStart(3)).isEqualTo(10);
+    assertThat(lines.lineEnd(3)).isEqualTo(10);
+    assertThat(lines.lineLength(3)).isEqualTo(0);
+  }
+
+}
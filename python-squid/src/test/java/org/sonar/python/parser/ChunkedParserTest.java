@@ -0,0 +1,142 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import com.google.common.base.Charsets;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Parser;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.sonar.python.PythonConfiguration;
+import org.sonar.python.lexer.PythonLexer;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ChunkedParserTest {
+
+  private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(4);
+
+  private final PythonConfiguration conf = new PythonConfiguration(Charsets.UTF_8);
+  private final Parser<Grammar> parser = PythonParser.create(conf);
+  private final Parser<Grammar> chunkedParser = new ChunkedParser(PythonParser.grammar(), conf, EXECUTOR, 3, 5);
+
+  @AfterClass
+  public static void shutdownExecutor() {
+    EXECUTOR.shutdownNow();
+  }
+
+  @Test
+  public void should_build_same_trees_as_sequential_parser() {
+    for (File file : FileUtils.listFiles(new File("src/test/resources/parser/"), new String[] {"py"}, true)) {
+      assertThat(describe(chunkedParser.parse(file))).as(file.getPath()).isEqualTo(describe(parser.parse(file)));
+    }
+  }
+
+  @Test
+  public void should_not_split_compound_statements() {
+    String source = "@decorator\n@other\ndef f(a, b):\n  return a + b\n"
+      + "if a == b:\n  x = 1\nelif a:\n  x = 2\nelse:\n  x = 3\n"
+      + "try:\n  f(1, 2)\nexcept:\n  pass\nelse:\n  pass\nfinally:\n  y = 4\n"
+      + "z = [1,\n  2, 3, 4, 5, 6]\n"
+      + "for i in z:\n  pass\nelse:\n  pass\n"
+      + "while z:\n  pass\nelse:\n  pass\n"
+      + "@decorator(\n  1)\nclass A:\n  pass\n"
+      + "if a: x = 1\nelse: x = 2\n";
+    List<Token> tokens = PythonLexer.create(conf).lex(source);
+    List<List<Token>> chunks = ChunkedParser.split(tokens, 1000, 1);
+
+    assertThat(chunks).hasSize(8);
+    assertThat(chunks.get(0).get(0).getValue()).isEqualTo("@");
+    assertThat(chunks.get(1).get(0).getValue()).isEqualTo("if");
+    assertThat(chunks.get(2).get(0).getValue()).isEqualTo("try");
+    assertThat(chunks.get(3).get(0).getValue()).isEqualTo("z");
+    assertThat(chunks.get(4).get(0).getValue()).isEqualTo("for");
+    assertThat(chunks.get(5).get(0).getValue()).isEqualTo("while");
+    assertThat(chunks.get(6).get(0).getValue()).isEqualTo("@");
+    assertThat(chunks.get(7).get(0).getValue()).isEqualTo("if");
+    for (List<Token> chunk : chunks) {
+      assertThat(chunk.get(chunk.size() - 1).getType()).isEqualTo(GenericTokenType.EOF);
+    }
+
+    assertThat(describe(new ChunkedParser(PythonParser.grammar(), conf, EXECUTOR, 4, 1).parse(source))).isEqualTo(describe(parser.parse(source)));
+  }
+
+  @Test
+  public void should_not_split_small_files() {
+    List<Token> tokens = PythonLexer.create(conf).lex("x = 1\ny = 2\n");
+    assertThat(ChunkedParser.split(tokens, 4, 100)).hasSize(1);
+  }
+
+  @Test
+  public void should_report_syntax_error_as_sequential_parser() {
+    assertSameSyntaxError("x = 1\ny = 2\nz = (\nw = 3\n");
+    // the error of the first chunk which has one
+    assertSameSyntaxError("x = 1\ny = = 2\nz = 3\nw = = 4\n");
+  }
+
+  @Test
+  public void should_parse_in_parallel_only_with_executor() {
+    PythonConfiguration parallel = new PythonConfiguration(Charsets.UTF_8);
+    parallel.setParsingThreads(4);
+    assertThat(PythonParser.create(parallel)).isNotInstanceOf(ChunkedParser.class);
+
+    parallel.setParsingExecutor(EXECUTOR);
+    assertThat(PythonParser.create(parallel)).isInstanceOf(ChunkedParser.class);
+  }
+
+  private void assertSameSyntaxError(String source) {
+    try {
+      parser.parse(source);
+    } catch (RecognitionException expected) {
+      try {
+        new ChunkedParser(PythonParser.grammar(), conf, EXECUTOR, 4, 1).parse(source);
+      } catch (RecognitionException e) {
+        assertThat(e.getLine()).isEqualTo(expected.getLine());
+        return;
+      }
+    }
+    throw new AssertionError("Syntax error expected");
+  }
+
+  private static String describe(AstNode node) {
+    StringBuilder sb = new StringBuilder();
+    describe(node, sb);
+    return sb.toString();
+  }
+
+  private static void describe(AstNode node, StringBuilder sb) {
+    sb.append('(').append(node.getName()).append(' ').append(node.getTokenLine()).append(':').append(node.getToken() == null ? "" : node.getTokenValue());
+    for (AstNode child : node.getChildren()) {
+      describe(child, sb);
+    }
+    sb.append(')');
+  }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+public class InstrumentedGrammarTest {
+
+  @Test
+  public void should_support_sslr_version_of_classpath() {
+    assertThat(InstrumentedGrammar.sslrVersion())
+      .as("InstrumentedGrammar uses the internals of SSLR: check them against the new version of SSLR before updating SUPPORTED_SSLR_VERSION")
+      .isEqualTo(InstrumentedGrammar.SUPPORTED_SSLR_VERSION);
+    InstrumentedGrammar.checkSslrVersion(InstrumentedGrammar.sslrVersion());
+  }
+
+  @Test
+  public void should_refuse_other_sslr_versions() {
+    for (String version : new String[] {"1.19", "1.21", null}) {
+      try {
+        InstrumentedGrammar.checkSslrVersion(version);
+        fail();
+      } catch (IllegalStateException e) {
+        assertThat(e.getMessage()).contains(InstrumentedGrammar.SUPPORTED_SSLR_VERSION);
+      }
+    }
+  }
+
+}
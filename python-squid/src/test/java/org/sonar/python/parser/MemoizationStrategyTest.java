@@ -0,0 +1,98 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import com.google.common.base.Charsets;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Parser;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonar.python.PythonConfiguration;
+import org.sonar.python.api.PythonGrammar;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MemoizationStrategyTest {
+
+  @Test
+  public void parse() {
+    assertThat(MemoizationStrategy.parse("all")).isSameAs(MemoizationStrategy.ALL);
+    assertThat(MemoizationStrategy.parse(" NONE ")).isSameAs(MemoizationStrategy.NONE);
+
+    MemoizationStrategy strategy = MemoizationStrategy.parse("test, or_test,ATOM");
+    assertThat(strategy).isEqualTo(MemoizationStrategy.of(PythonGrammar.ATOM, PythonGrammar.OR_TEST, PythonGrammar.TEST));
+    assertThat(strategy.isMemoized(PythonGrammar.TEST)).isTrue();
+    assertThat(strategy.isMemoized(PythonGrammar.ATOM)).isTrue();
+    assertThat(strategy.isMemoized(PythonGrammar.EXPR)).isFalse();
+    assertThat(strategy.toString()).isEqualTo("TEST,OR_TEST,ATOM");
+
+    assertThat(MemoizationStrategy.ALL.isMemoized(PythonGrammar.EXPR)).isTrue();
+    assertThat(MemoizationStrategy.NONE.isMemoized(PythonGrammar.EXPR)).isFalse();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknown_rule() {
+    MemoizationStrategy.parse("TEST,UNKNOWN");
+  }
+
+  @Test
+  public void grammars_are_shared_by_strategy() {
+    MemoizationStrategy strategy = MemoizationStrategy.of(PythonGrammar.ATOM);
+    assertThat(PythonParser.grammar(strategy)).isSameAs(PythonParser.grammar(MemoizationStrategy.of(PythonGrammar.ATOM)));
+    assertThat(PythonParser.grammar(strategy)).isNotSameAs(PythonParser.grammar());
+    assertThat(PythonParser.grammar(MemoizationStrategy.ALL)).isSameAs(PythonParser.grammar());
+  }
+
+  @Test
+  public void strategies_produce_same_trees() {
+    Parser<Grammar> all = parser(MemoizationStrategy.ALL);
+    Parser<Grammar> none = parser(MemoizationStrategy.NONE);
+    Parser<Grammar> some = parser(MemoizationStrategy.of(PythonGrammar.TEST, PythonGrammar.OR_TEST, PythonGrammar.ATOM));
+    for (File file : FileUtils.listFiles(new File("src/test/resources/parser/"), new String[] {"py"}, true)) {
+      String expected = describe(all.parse(file));
+      assertThat(describe(none.parse(file))).as(file.getPath()).isEqualTo(expected);
+      assertThat(describe(some.parse(file))).as(file.getPath()).isEqualTo(expected);
+    }
+  }
+
+  private static Parser<Grammar> parser(MemoizationStrategy strategy) {
+    PythonConfiguration conf = new PythonConfiguration(Charsets.UTF_8);
+    conf.setMemoization(strategy);
+    return PythonParser.create(conf);
+  }
+
+  private static String describe(AstNode node) {
+    StringBuilder sb = new StringBuilder();
+    describe(node, sb);
+    return sb.toString();
+  }
+
+  private static void describe(AstNode node, StringBuilder sb) {
+    sb.append('(').append(node.getName()).append(' ').append(node.getTokenLine());
+    for (AstNode child : node.getChildren()) {
+      describe(child, sb);
+    }
+    sb.append(')');
+  }
+
+}
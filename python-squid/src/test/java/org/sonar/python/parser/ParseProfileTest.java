@@ -0,0 +1,165 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.python.parser;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.impl.Parser;
+import org.junit.Test;
+import org.sonar.python.PythonConfiguration;
+import org.sonar.python.api.PythonGrammar;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+public class ParseProfileTest {
+
+  private static final File FILE = new File("src/test/resources/metrics/lines.py");
+
+  @Test
+  public void should_profile_parsed_files() {
+    final List<String> profiledFiles = Lists.newArrayList();
+    ParseProfile profile = new ParseProfile() {
+      @Override
+      protected void fileProfiled(FileProfile file) {
+        profiledFiles.add(file.getPath());
+      }
+    };
+    Parser<Grammar> parser = PythonParser.create(configuration(profile, MemoizationStrategy.ALL));
+
+    parser.parse(FILE);
+    parser.parse("x = (1 + 2) * 3\n");
+
+    assertThat(profiledFiles).containsExactly(FILE.getPath(), "<source>");
+    assertThat(profile.getFiles()).hasSize(2);
+
+    ParseProfile.FileProfile source = profile.getFiles().get(1);
+    // x = ( 1 + 2 ) * 3 NEWLINE EOF
+    assertThat(source.getTokens()).isEqualTo(11);
+    ParseProfile.RuleProfile fileInput = source.getRules().get(PythonGrammar.FILE_INPUT.toString());
+    assertThat(fileInput.getCalls()).isEqualTo(1);
+    assertThat(fileInput.getFailures()).isEqualTo(0);
+    assertThat(fileInput.getMemoHits()).isEqualTo(0);
+    // x, (1 + 2), 1, 2 and 3
+    ParseProfile.RuleProfile atom = source.getRules().get(PythonGrammar.ATOM.toString());
+    assertThat(atom.getCalls() - atom.getFailures()).isGreaterThanOrEqualTo(5);
+    // tried after each atom, on '=', '+', ')', '*' and NEWLINE
+    assertThat(source.getRules().get(PythonGrammar.TRAILER.toString()).getFailures()).isGreaterThanOrEqualTo(5);
+    for (ParseProfile.RuleProfile rule : source.getRules().values()) {
+      assertThat(rule.getFailures() + rule.getMemoHits()).isLessThanOrEqualTo(rule.getCalls());
+    }
+    assertThat(source.report()).startsWith("<source>: 11 tokens");
+
+    assertThat(profile.getRules().get(PythonGrammar.FILE_INPUT.toString()).getCalls()).isEqualTo(2);
+    String report = profile.report();
+    assertThat(report).startsWith("Parse profile of 2 files: ");
+    assertThat(report).contains(FILE.getPath());
+    assertThat(report).contains("Memo hits");
+    assertThat(report).contains("FILE_INPUT");
+  }
+
+  @Test
+  public void should_count_memo_hits_of_memoized_rules_only() {
+    // ARGUMENT tries 'TEST "=" TEST' and then 'TEST' on 'a'
+    String source = "f(a, b=1)\n";
+    ParseProfile memoized = new ParseProfile();
+    PythonParser.create(configuration(memoized, MemoizationStrategy.ALL)).parse(source);
+    ParseProfile notMemoized = new ParseProfile();
+    PythonParser.create(configuration(notMemoized, MemoizationStrategy.NONE)).parse(source);
+
+    ParseProfile.RuleProfile test = memoized.getRules().get(PythonGrammar.TEST.toString());
+    assertThat(test.getMemoHits()).isGreaterThan(0);
+    assertThat(test.getMemoHitRatio()).isGreaterThan(0.0);
+    assertThat(notMemoized.getRules().get(PythonGrammar.TEST.toString()).getCalls()).isGreaterThan(test.getCalls() - test.getMemoHits());
+    for (ParseProfile.RuleProfile rule : notMemoized.getRules().values()) {
+      assertThat(rule.getMemoHits()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void should_share_instrumented_grammar_between_parsers() {
+    assertThat(InstrumentedGrammar.get(MemoizationStrategy.ALL)).isSameAs(InstrumentedGrammar.get(MemoizationStrategy.ALL));
+    assertThat(InstrumentedGrammar.get(MemoizationStrategy.NONE)).isNotSameAs(InstrumentedGrammar.get(MemoizationStrategy.ALL));
+
+    ParseProfile first = new ParseProfile();
+    Parser<Grammar> firstParser = PythonParser.create(configuration(first, MemoizationStrategy.ALL));
+    ParseProfile second = new ParseProfile();
+    Parser<Grammar> secondParser = PythonParser.create(configuration(second, MemoizationStrategy.ALL));
+    firstParser.parse("x = 1\n");
+    secondParser.parse("x = 1\ny = 2\n");
+    firstParser.parse("z = 3\n");
+
+    assertThat(first.getRules().get(PythonGrammar.FILE_INPUT.toString()).getCalls()).isEqualTo(2);
+    assertThat(second.getRules().get(PythonGrammar.FILE_INPUT.toString()).getCalls()).isEqualTo(1);
+    assertThat(first.getFiles()).hasSize(2);
+    assertThat(second.getFiles()).hasSize(1);
+  }
+
+  @Test
+  public void should_build_same_tree_as_the_grammar() {
+    AstNode expected = PythonParser.create(new PythonConfiguration(Charsets.UTF_8)).parse(FILE);
+    AstNode actual = PythonParser.create(configuration(new ParseProfile(), MemoizationStrategy.ALL)).parse(FILE);
+    assertSameTree(actual, expected);
+  }
+
+  @Test
+  public void should_profile_files_with_syntax_error() {
+    ParseProfile profile = new ParseProfile();
+    try {
+      PythonParser.create(configuration(profile, MemoizationStrategy.ALL)).parse("x = = 1\n");
+      fail();
+    } catch (RecognitionException e) {
+      assertThat(profile.getFiles()).hasSize(1);
+      ParseProfile.RuleProfile fileInput = profile.getRules().get(PythonGrammar.FILE_INPUT.toString());
+      assertThat(fileInput.getFailures()).isGreaterThan(0);
+      assertThat(fileInput.getFailures()).isEqualTo(fileInput.getCalls());
+    }
+  }
+
+  @Test
+  public void should_not_profile_by_default() {
+    Parser<Grammar> parser = PythonParser.create(new PythonConfiguration(Charsets.UTF_8));
+    assertThat(parser).isNotInstanceOf(ProfilingParser.class);
+  }
+
+  private static PythonConfiguration configuration(ParseProfile profile, MemoizationStrategy memoization) {
+    PythonConfiguration conf = new PythonConfiguration(Charsets.UTF_8);
+    conf.setMemoization(memoization);
+    conf.setParseProfile(profile);
+    return conf;
+  }
+
+  private static void assertSameTree(AstNode actual, AstNode expected) {
+    assertThat(actual.getType()).isEqualTo(expected.getType());
+    assertThat(actual.getTokenValue()).isEqualTo(expected.getTokenValue());
+    assertThat(actual.getTokenLine()).isEqualTo(expected.getTokenLine());
+    assertThat(actual.getNumberOfChildren()).as(expected.toString()).isEqualTo(expected.getNumberOfChildren());
+    for (int i = 0; i < expected.getNumberOfChildren(); i++) {
+      assertSameTree(actual.getChildren().get(i), expected.getChildren().get(i));
+    }
+  }
+
+}
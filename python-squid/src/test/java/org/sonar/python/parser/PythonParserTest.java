@@ -20,6 +20,7 @@
 package org.sonar.python.parser;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.impl.Parser;
 import org.apache.commons.io.FileUtils;
@@ -28,6 +29,13 @@ import org.sonar.python.PythonConfiguration;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fest.assertions.Assertions.assertThat;
 
 public class PythonParserTest {
 
@@ -41,6 +49,44 @@ public class PythonParserTest {
     }
   }
 
+  @Test
+  public void parsers_share_grammar() {
+    Parser<Grammar> other = PythonParser.create(new PythonConfiguration(Charsets.ISO_8859_1));
+    assertThat(other.getGrammar()).isSameAs(parser.getGrammar());
+    assertThat(PythonParser.grammar()).isSameAs(parser.getGrammar());
+  }
+
+  @Test
+  public void parsers_of_different_threads_share_grammar() throws Exception {
+    final Collection<File> files = listFiles();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> futures = Lists.newArrayList();
+      for (int i = 0; i < 4; i++) {
+        futures.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            Parser<Grammar> threadParser = PythonParser.create(new PythonConfiguration(Charsets.UTF_8));
+            int tokens = 0;
+            for (File file : files) {
+              tokens += threadParser.parse(file).getTokens().size();
+            }
+            return tokens;
+          }
+        }));
+      }
+      int expected = 0;
+      for (File file : files) {
+        expected += parser.parse(file).getTokens().size();
+      }
+      for (Future<Integer> future : futures) {
+        assertThat(future.get()).isEqualTo(expected);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   private static Collection<File> listFiles() {
     File dir = new File("src/test/resources/parser/");
     return FileUtils.listFiles(dir, new String[]{"py"}, true);
@@ -0,0 +1,138 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.python;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Per-file results of a sensor kept from one analysis to the next one, the values must be serializable.
+ * An entry is reused only if the content of its file did not change, and the whole cache
+ * is dropped as soon as the fingerprint of the settings which produced the results changes.
+ * Only the entries of the current analysis are written back, so deleted files do not accumulate.
+ */
+public final class AnalysisCache<V> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisCache.class);
+
+  private static final int FORMAT_VERSION = 1;
+
+  private final File file;
+  private final String fingerprint;
+  private final Map<String, Entry<V>> previousEntries;
+  private final HashMap<String, Entry<V>> entries = Maps.newHashMap();
+
+  private AnalysisCache(File file, String fingerprint, Map<String, Entry<V>> previousEntries) {
+    this.file = file;
+    this.fingerprint = fingerprint;
+    this.previousEntries = previousEntries;
+  }
+
+  public static <V> AnalysisCache<V> load(File file, String fingerprint) {
+    Map<String, Entry<V>> previousEntries = Maps.newHashMap();
+    if (file.isFile()) {
+      ObjectInputStream in = null;
+      try {
+        in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+        if (in.readInt() == FORMAT_VERSION && fingerprint.equals(in.readObject())) {
+          previousEntries = readEntries(in);
+        } else {
+          LOG.info("The analysis settings have changed, the cache '{}' is ignored", file);
+        }
+      } catch (Exception e) {
+        LOG.warn("Cannot read the analysis cache '" + file + "', it is ignored", e);
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    return new AnalysisCache<V>(file, fingerprint, previousEntries);
+  }
+
+  /**
+   * The cache file is only written by {@link #save()}, with the entries of the same type of results, as identified by the fingerprint.
+   */
+  @SuppressWarnings("unchecked")
+  private static <V> Map<String, Entry<V>> readEntries(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    return (Map<String, Entry<V>>) in.readObject();
+  }
+
+  @CheckForNull
+  public V get(String path, String contentHash) {
+    Entry<V> entry = previousEntries.get(path);
+    if (entry != null && entry.contentHash.equals(contentHash)) {
+      entries.put(path, entry);
+      return entry.result;
+    }
+    return null;
+  }
+
+  public void put(String path, String contentHash, V result) {
+    entries.put(path, new Entry<V>(contentHash, result));
+  }
+
+  public void save() {
+    ObjectOutputStream out = null;
+    try {
+      Files.createParentDirs(file);
+      out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+      out.writeInt(FORMAT_VERSION);
+      out.writeObject(fingerprint);
+      out.writeObject(entries);
+    } catch (IOException e) {
+      LOG.warn("Cannot write the analysis cache '" + file + "'", e);
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  private static final class Entry<V> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String contentHash;
+    private final V result;
+
+    Entry(String contentHash, V result) {
+      this.contentHash = contentHash;
+      this.result = result;
+    }
+
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.python;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * SHA-1 digests used to detect changes of analyzed files between two analyses.
+ */
+public final class Digests {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Digests.class);
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private Digests() {
+  }
+
+  /**
+   * Identifies the build of the jars or directories which the given classes are loaded from, so that results computed by another
+   * build are not reused. A jar is identified by its name, size and date, a directory of classes by the names, sizes and dates
+   * of its files. When the code cannot be located, a warning is logged and the returned fingerprint is different on each call.
+   */
+  public static String codeFingerprint(Class<?>... classes) {
+    StringBuilder locations = new StringBuilder();
+    for (Class<?> clazz : classes) {
+      CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+      URL location = codeSource == null ? null : codeSource.getLocation();
+      try {
+        if (location == null) {
+          return unknownFingerprint(clazz, "its code source is unknown");
+        }
+        File file = new File(location.toURI());
+        if (file.isFile()) {
+          appendFile(file, file.getName(), locations);
+        } else {
+          appendFiles(file, "", locations);
+        }
+      } catch (IOException e) {
+        return unknownFingerprint(clazz, e.getMessage());
+      } catch (URISyntaxException e) {
+        return unknownFingerprint(clazz, e.getMessage());
+      } catch (IllegalArgumentException e) {
+        // not a file URI
+        return unknownFingerprint(clazz, location + " is not a file");
+      }
+    }
+    return sha1Hex(locations.toString());
+  }
+
+  private static String unknownFingerprint(Class<?> clazz, String reason) {
+    LOG.warn("Cannot locate the code of {}, the results of the previous analysis are not reused: {}", clazz.getName(), reason);
+    return UUID.randomUUID().toString();
+  }
+
+  private static void appendFiles(File directory, String prefix, StringBuilder builder) throws IOException {
+    File[] children = directory.listFiles();
+    if (children == null) {
+      throw new IOException("Cannot list the directory " + directory);
+    }
+    Arrays.sort(children);
+    for (File child : children) {
+      String path = prefix + child.getName();
+      if (child.isDirectory()) {
+        appendFiles(child, path + '/', builder);
+      } else {
+        appendFile(child, path, builder);
+      }
+    }
+  }
+
+  private static void appendFile(File file, String path, StringBuilder builder) {
+    builder.append(path).append(':').append(file.length()).append(':').append(file.lastModified()).append('\n');
+  }
+
+  public static String sha1Hex(File file) throws IOException {
+    return sha1Hex(Files.toByteArray(file));
+  }
+
+  public static String sha1Hex(String text) {
+    return sha1Hex(text.getBytes(Charsets.UTF_8));
+  }
+
+  public static String sha1Hex(byte[] bytes) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-1 is not supported by this JVM", e);
+    }
+    byte[] hash = digest.digest(bytes);
+    char[] hex = new char[hash.length * 2];
+    for (int i = 0; i < hash.length; i++) {
+      hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+      hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+    }
+    return new String(hex);
+  }
+
+}
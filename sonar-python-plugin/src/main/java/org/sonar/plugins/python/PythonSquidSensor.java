@@ -19,15 +19,29 @@
  */
 package org.sonar.plugins.python;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.Properties;
+import org.sonar.api.Property;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.checks.AnnotationCheckFactory;
 import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
 import org.sonar.api.issue.Issuable;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.measures.PersistenceMode;
 import org.sonar.api.measures.RangeDistributionBuilder;
@@ -36,45 +50,142 @@ import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.ActiveRuleParam;
 import org.sonar.api.scan.filesystem.FileQuery;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.api.utils.SonarException;
 import org.sonar.python.PythonAstScanner;
 import org.sonar.python.PythonConfiguration;
 import org.sonar.python.api.PythonMetric;
 import org.sonar.python.checks.CheckList;
 import org.sonar.python.metrics.FileLinesVisitor;
+import org.sonar.python.parser.MemoizationStrategy;
+import org.sonar.python.parser.ParseProfile;
 import org.sonar.squidbridge.AstScanner;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.squidbridge.api.CheckMessage;
 import org.sonar.squidbridge.api.SourceCode;
 import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.squidbridge.api.SourceFunction;
-import org.sonar.squidbridge.indexer.QueryByParent;
-import org.sonar.squidbridge.indexer.QueryByType;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+@Properties({
+  @Property(
+    key = PythonSquidSensor.THREADS_KEY,
+    defaultValue = "1",
+    name = "Number of scanner threads",
+    description = "Number of threads used to parse and check the Python files. Each thread uses its own parser and its own instances of the checks. Set to 1 to scan the files sequentially.",
+    global = true,
+    project = true),
+  @Property(
+    key = PythonSquidSensor.CACHE_KEY,
+    defaultValue = "false",
+    name = "Analysis cache",
+    description = "Keep the measures and issues of each file in the working directory, and reuse them in the next analysis for the files which have not changed. "
+      + "The cache is dropped as soon as the active rules or their parameters change.",
+    global = true,
+    project = true),
+  @Property(
+    key = PythonSquidSensor.MEMOIZATION_KEY,
+    defaultValue = "all",
+    name = "Parser memoization",
+    description = "Rules of the Python grammar whose matches are memoized while parsing: \"all\", \"none\", or a comma-separated list of rules such as "
+      + "\"TEST,OR_TEST,ATOM\". Memoizing fewer rules lowers the memory used to parse large files, but can make parsing slower.",
+    global = true,
+    project = true),
+  @Property(
+    key = PythonSquidSensor.PARSING_THREADS_KEY,
+    defaultValue = "1",
+    name = "Number of parsing threads per file",
+    description = "Number of threads used to parse the top-level statements of a large file in parallel. Only files of more than "
+      + "a few tens of thousands of tokens are split. Set to 1 to parse each file in a single thread.",
+    global = true,
+    project = true),
+  @Property(
+    key = PythonSquidSensor.PROFILE_PARSER_KEY,
+    defaultValue = "false",
+    name = "Parser profiling",
+    description = "Measure the time spent to lex and parse each file and, for each rule of the grammar, the calls, memo hits, failed matches "
+      + "and time, so that the rules which backtrack can be found. Files are then scanned one after the other by a single thread, "
+      + "whatever the number of scanner threads and of parsing threads. "
+      + "The report is written to the file " + PythonSquidSensor.PROFILE_FILE + " of the working directory.",
+    global = true,
+    project = true),
+  @Property(
+    key = PythonSquidSensor.STREAMING_KEY,
+    defaultValue = "false",
+    name = "Save results while scanning",
+    description = "Save the measures and issues of each file as soon as it has been scanned, and drop its source code tree right away, "
+      + "so that the memory used by the analysis doesn't grow with the number of files. The files are then saved in the order of the scan.",
+    global = true,
+    project = true),
+  @Property(
+    key = PythonSquidSensor.TOKENS_ONLY_KEY,
+    defaultValue = "false",
+    name = "Lex without parsing",
+    description = "Lex the files without parsing them, and only compute the lines, lines of code and comment lines. "
+      + "The files are parsed anyway when an active rule needs their syntax tree.",
+    global = true,
+    project = true)
+})
 public final class PythonSquidSensor implements Sensor {
 
+  public static final String THREADS_KEY = "sonar.python.squid.threads";
+  public static final String CACHE_KEY = "sonar.python.squid.cache";
+  public static final String MEMOIZATION_KEY = "sonar.python.squid.memoization";
+  public static final String PARSING_THREADS_KEY = "sonar.python.squid.parsing_threads";
+  public static final String PROFILE_PARSER_KEY = "sonar.python.squid.profile_parser";
+  public static final String STREAMING_KEY = "sonar.python.squid.streaming";
+  public static final String TOKENS_ONLY_KEY = "sonar.python.squid.tokens_only";
+
+  static final String PROFILE_FILE = "python-parse-profile.txt";
+
+  private static final Logger LOG = LoggerFactory.getLogger(PythonSquidSensor.class);
+
+  private static final String CACHE_FILE = "python-squid-cache.bin";
+
   private static final Number[] FUNCTIONS_DISTRIB_BOTTOM_LIMITS = {1, 2, 4, 6, 8, 10, 12, 20, 30};
   private static final Number[] FILES_DISTRIB_BOTTOM_LIMITS = {0, 5, 10, 20, 30, 60, 90};
 
+  private final RulesProfile profile;
   private final AnnotationCheckFactory annotationCheckFactory;
   private final FileLinesContextFactory fileLinesContextFactory;
+  private final Object contextLock = new Object();
 
   private Project project;
   private SensorContext context;
-  private AstScanner<Grammar> scanner;
   private ModuleFileSystem fileSystem;
   private ResourcePerspectives resourcePerspectives;
+  private Settings settings;
+  private boolean tokensOnly;
 
-  public PythonSquidSensor(RulesProfile profile, FileLinesContextFactory fileLinesContextFactory, ModuleFileSystem fileSystem, ResourcePerspectives resourcePerspectives) {
+  public PythonSquidSensor(RulesProfile profile, FileLinesContextFactory fileLinesContextFactory, ModuleFileSystem fileSystem, ResourcePerspectives resourcePerspectives,
+    Settings settings) {
+    this.profile = profile;
     this.annotationCheckFactory = AnnotationCheckFactory.create(profile, CheckList.REPOSITORY_KEY, CheckList.getChecks());
     this.fileLinesContextFactory = fileLinesContextFactory;
     this.fileSystem = fileSystem;
     this.resourcePerspectives = resourcePerspectives;
+    this.settings = settings;
   }
 
   public boolean shouldExecuteOnProject(Project project) {
@@ -84,76 +195,342 @@ public final class PythonSquidSensor implements Sensor {
   public void analyse(Project project, SensorContext context) {
     this.project = project;
     this.context = context;
+    this.tokensOnly = settings.getBoolean(TOKENS_ONLY_KEY) && onlyTokenChecksAreActive();
+
+    List<java.io.File> files = fileSystem.files(FileQuery.onSource().onLanguage(Python.KEY));
+    boolean streaming = settings.getBoolean(STREAMING_KEY);
+    AnalysisCache<SquidFileResult> cache = settings.getBoolean(CACHE_KEY) ? AnalysisCache.<SquidFileResult>load(new java.io.File(fileSystem.workingDir(), CACHE_FILE), checksFingerprint()) : null;
+
+    Map<String, SquidFileResult> results = Maps.newHashMap();
+    Set<String> cachedPaths = Sets.newHashSet();
+    Map<String, String> contentHashes = Maps.newHashMap();
+    List<java.io.File> filesToScan = Lists.newArrayList();
+    for (java.io.File file : files) {
+      String path = file.getAbsolutePath();
+      SquidFileResult cachedResult = null;
+      if (cache != null) {
+        String contentHash = contentHash(file);
+        if (contentHash != null) {
+          contentHashes.put(path, contentHash);
+          cachedResult = cache.get(path, contentHash);
+        }
+      }
+      if (cachedResult == null) {
+        filesToScan.add(file);
+      } else {
+        results.put(path, cachedResult);
+        cachedPaths.add(path);
+      }
+    }
+    if (cache != null) {
+      LOG.info("{} Python file(s) taken from the analysis cache, {} file(s) to scan", cachedPaths.size(), filesToScan.size());
+    }
+
+    if (!filesToScan.isEmpty()) {
+      RecordingFileLinesContextFactory linesRecorder = cache == null ? null : new RecordingFileLinesContextFactory(fileLinesContextFactory);
+      scan(filesToScan, linesRecorder == null ? fileLinesContextFactory : linesRecorder, linesRecorder, results, streaming);
+    }
 
-    Collection<SquidAstVisitor<Grammar>> squidChecks = annotationCheckFactory.getChecks();
-    List<SquidAstVisitor<Grammar>> visitors = Lists.newArrayList(squidChecks);
-    visitors.add(new FileLinesVisitor(project, fileLinesContextFactory));
-    this.scanner = PythonAstScanner.create(createConfiguration(project), visitors.toArray(new SquidAstVisitor[visitors.size()]));
-    scanner.scanFiles(fileSystem.files(FileQuery.onSource().onLanguage(Python.KEY)));
+    // Files are saved in the order of the file system, as by a sequential scan, whatever the cache and the number of threads
+    for (java.io.File file : files) {
+      String path = file.getAbsolutePath();
+      SquidFileResult result = results.get(path);
+      boolean cached = cachedPaths.contains(path);
+      // scanned files have already been saved in streaming mode
+      if (result != null && (cached || !streaming)) {
+        save(path, result, cached);
+      }
+    }
 
-    Collection<SourceCode> squidSourceFiles = scanner.getIndex().search(new QueryByType(SourceFile.class));
-    save(squidSourceFiles);
+    if (cache != null) {
+      for (Map.Entry<String, SquidFileResult> entry : results.entrySet()) {
+        String contentHash = contentHashes.get(entry.getKey());
+        if (contentHash != null && entry.getValue().hasLines()) {
+          cache.put(entry.getKey(), contentHash, entry.getValue());
+        }
+      }
+      cache.save();
+    }
   }
 
   private PythonConfiguration createConfiguration(Project project) {
-    return new PythonConfiguration(fileSystem.sourceCharset());
+    PythonConfiguration configuration = new PythonConfiguration(fileSystem.sourceCharset());
+    String memoization = settings.getString(MEMOIZATION_KEY);
+    if (!Strings.isNullOrEmpty(memoization)) {
+      configuration.setMemoization(MemoizationStrategy.parse(memoization));
+    }
+    configuration.setParsingThreads(Math.max(1, settings.getInt(PARSING_THREADS_KEY)));
+    configuration.setTokensOnly(tokensOnly);
+    return configuration;
+  }
+
+  private boolean onlyTokenChecksAreActive() {
+    List<Class> tokenChecks = CheckList.getTokenChecks();
+    for (Object check : annotationCheckFactory.getChecks()) {
+      if (!tokenChecks.contains(check.getClass())) {
+        LOG.info("The Python files are parsed because the rule {} needs their syntax tree", annotationCheckFactory.getActiveRule(check).getRuleKey());
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Scans the files and puts their results in the given map. In streaming mode, each file is saved as soon as it has been
+   * scanned, and its result is kept in the map only when it has to be put in the analysis cache.
+   */
+  private void scan(List<java.io.File> files, FileLinesContextFactory linesContextFactory, @Nullable final RecordingFileLinesContextFactory linesRecorder,
+    final Map<String, SquidFileResult> results, final boolean streaming) {
+    PythonConfiguration configuration = createConfiguration(project);
+    int threads = Math.max(1, Math.min(settings.getInt(THREADS_KEY), files.size()));
+    if (settings.getBoolean(PROFILE_PARSER_KEY)) {
+      // the times of the rules would also measure the contention between the scanner threads
+      configuration.setParseProfile(new ParseProfile());
+      threads = 1;
+    }
+
+    ScanListener listener = new ScanListener() {
+      public void scanned(SourceFile squidFile, AnnotationCheckFactory checkFactory) {
+        java.io.File file = new java.io.File(squidFile.getKey());
+        SquidFileResult result = createResult(squidFile, checkFactory);
+        synchronized (contextLock) {
+          if (streaming) {
+            save(file.getAbsolutePath(), result, false);
+          }
+          if (!streaming || linesRecorder != null) {
+            addLines(file, result, linesRecorder);
+            results.put(file.getAbsolutePath(), result);
+          }
+        }
+      }
+    };
+
+    // one pool for the chunks of the large files of all the scans
+    ExecutorService parsingExecutor = configuration.getParsingThreads() > 1 ? Executors.newFixedThreadPool(configuration.getParsingThreads()) : null;
+    configuration.setParsingExecutor(parsingExecutor);
+    try {
+      if (threads == 1) {
+        new Scan(annotationCheckFactory, configuration, createFileLinesVisitor(linesContextFactory), files, listener).call();
+      } else {
+        scanInParallel(configuration, linesContextFactory, files, threads, listener);
+      }
+    } finally {
+      if (parsingExecutor != null) {
+        parsingExecutor.shutdownNow();
+      }
+    }
+
+    if (configuration.getParseProfile() != null) {
+      writeParseProfile(configuration.getParseProfile());
+    }
   }
 
-  private void save(Collection<SourceCode> squidSourceFiles) {
-    for (SourceCode squidSourceFile : squidSourceFiles) {
-      SourceFile squidFile = (SourceFile) squidSourceFile;
+  private void writeParseProfile(ParseProfile parseProfile) {
+    java.io.File file = new java.io.File(fileSystem.workingDir(), PROFILE_FILE);
+    try {
+      Files.createParentDirs(file);
+      Files.write(parseProfile.report(), file, Charsets.UTF_8);
+    } catch (IOException e) {
+      throw new SonarException("Unable to write the parse profile " + file, e);
+    }
+    LOG.info("Parse profile written to {}", file);
+  }
 
-      File sonarFile = File.fromIOFile(new java.io.File(squidFile.getKey()), project);
+  private void addLines(java.io.File file, SquidFileResult result, @Nullable RecordingFileLinesContextFactory linesRecorder) {
+    File sonarFile = File.fromIOFile(file, project);
+    if (linesRecorder != null && sonarFile != null && linesRecorder.getLinesOfCode(sonarFile) != null) {
+      result.setLines(linesRecorder.getLinesOfCode(sonarFile), linesRecorder.getLinesOfComments(sonarFile));
+    }
+  }
+
+  /**
+   * Runs the given number of scans, which take the files one at a time from a shared queue, so that a thread which scans
+   * a large file doesn't hold up the files behind it. Lexer, parser and checks hold per-file state, so each scan gets its
+   * own scanner and its own instances of the checks.
+   */
+  private void scanInParallel(PythonConfiguration configuration, FileLinesContextFactory linesContextFactory, List<java.io.File> files, int threads,
+    ScanListener listener) {
+    Collection<java.io.File> queue = new FileQueue(files);
+    List<Callable<Void>> scans = Lists.newArrayList();
+    for (int i = 0; i < threads; i++) {
+      AnnotationCheckFactory checkFactory = i == 0 ? annotationCheckFactory : AnnotationCheckFactory.create(profile, CheckList.REPOSITORY_KEY, CheckList.getChecks());
+      scans.add(new Scan(checkFactory, configuration, createFileLinesVisitor(linesContextFactory), queue, listener));
+    }
 
-      saveFilesComplexityDistribution(sonarFile, squidFile);
-      saveFunctionsComplexityDistribution(sonarFile, squidFile);
-      saveMeasures(sonarFile, squidFile);
-      saveIssues(sonarFile, squidFile);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (Future<Void> future : executor.invokeAll(scans)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Interrupted while scanning the Python files", e);
+    } catch (ExecutionException e) {
+      throw new SonarException("Cannot scan the Python files, details: '" + e.getCause() + "'", e.getCause());
+    } finally {
+      executor.shutdownNow();
     }
   }
 
-  private void saveMeasures(File sonarFile, SourceFile squidFile) {
-    context.saveMeasure(sonarFile, CoreMetrics.FILES, squidFile.getDouble(PythonMetric.FILES));
-    context.saveMeasure(sonarFile, CoreMetrics.LINES, squidFile.getDouble(PythonMetric.LINES));
-    context.saveMeasure(sonarFile, CoreMetrics.NCLOC, squidFile.getDouble(PythonMetric.LINES_OF_CODE));
-    context.saveMeasure(sonarFile, CoreMetrics.STATEMENTS, squidFile.getDouble(PythonMetric.STATEMENTS));
-    context.saveMeasure(sonarFile, CoreMetrics.FUNCTIONS, squidFile.getDouble(PythonMetric.FUNCTIONS));
-    context.saveMeasure(sonarFile, CoreMetrics.CLASSES, squidFile.getDouble(PythonMetric.CLASSES));
-    context.saveMeasure(sonarFile, CoreMetrics.COMPLEXITY, squidFile.getDouble(PythonMetric.COMPLEXITY));
-    context.saveMeasure(sonarFile, CoreMetrics.COMMENT_LINES, squidFile.getDouble(PythonMetric.COMMENT_LINES));
+  private SquidAstVisitor<Grammar> createFileLinesVisitor(FileLinesContextFactory linesContextFactory) {
+    return new FileLinesVisitor(project, linesContextFactory) {
+      @Override
+      public void leaveFile(AstNode astNode) {
+        // line data and results of concurrent scans must not be saved at the same time
+        synchronized (contextLock) {
+          super.leaveFile(astNode);
+        }
+      }
+    };
+  }
+
+  private static SquidFileResult createResult(SourceFile squidFile, AnnotationCheckFactory checkFactory) {
+    SquidFileResult result = new SquidFileResult();
+    for (PythonMetric metric : PythonMetric.values()) {
+      result.setMeasure(metric, aggregate(squidFile, metric));
+    }
+
+    addFunctionComplexities(squidFile, result);
+
+    Collection<CheckMessage> messages = squidFile.getCheckMessages();
+    if (messages != null) {
+      for (CheckMessage message : messages) {
+        ActiveRule rule = checkFactory.getActiveRule(message.getCheck());
+        result.addMessage(rule.getRepositoryKey(), rule.getRuleKey(), message.getLine(), message.getText(Locale.ENGLISH));
+      }
+    }
+    return result;
   }
 
-  private void saveFunctionsComplexityDistribution(File sonarFile, SourceFile squidFile) {
-    Collection<SourceCode> squidFunctionsInFile = scanner.getIndex().search(new QueryByParent(squidFile), new QueryByType(SourceFunction.class));
+  /**
+   * Walks the source code tree of the file rather than querying the index of the whole project,
+   * which would take a time proportional to the number of scanned files for each file.
+   */
+  static void addFunctionComplexities(SourceCode squidCode, SquidFileResult result) {
+    if (!squidCode.hasChildren()) {
+      return;
+    }
+    for (SourceCode child : squidCode.getChildren()) {
+      if (child instanceof SourceFunction) {
+        result.addFunctionComplexity(aggregate(child, PythonMetric.COMPLEXITY));
+      }
+      addFunctionComplexities(child, result);
+    }
+  }
+
+  /**
+   * Files are collected as soon as they have been scanned, before Squid adds the measures of the functions and classes
+   * to their parents at the end of the scan, so the measures of the whole tree are summed here.
+   */
+  private static double aggregate(SourceCode squidCode, PythonMetric metric) {
+    double value = squidCode.getDouble(metric);
+    if (squidCode.hasChildren()) {
+      for (SourceCode child : squidCode.getChildren()) {
+        value += aggregate(child, metric);
+      }
+    }
+    return value;
+  }
+
+  private void save(String path, SquidFileResult result, boolean cached) {
+    File sonarFile = File.fromIOFile(new java.io.File(path), project);
+
+    if (!tokensOnly) {
+      saveFilesComplexityDistribution(sonarFile, result);
+      saveFunctionsComplexityDistribution(sonarFile, result);
+    }
+    saveMeasures(sonarFile, result);
+    saveIssues(sonarFile, result);
+    if (cached) {
+      saveLines(sonarFile, result);
+    }
+  }
+
+  private void saveMeasures(File sonarFile, SquidFileResult result) {
+    context.saveMeasure(sonarFile, CoreMetrics.FILES, result.getMeasure(PythonMetric.FILES));
+    context.saveMeasure(sonarFile, CoreMetrics.LINES, result.getMeasure(PythonMetric.LINES));
+    context.saveMeasure(sonarFile, CoreMetrics.NCLOC, result.getMeasure(PythonMetric.LINES_OF_CODE));
+    context.saveMeasure(sonarFile, CoreMetrics.COMMENT_LINES, result.getMeasure(PythonMetric.COMMENT_LINES));
+    if (tokensOnly) {
+      // the other measures are computed from the syntax tree
+      return;
+    }
+    context.saveMeasure(sonarFile, CoreMetrics.STATEMENTS, result.getMeasure(PythonMetric.STATEMENTS));
+    context.saveMeasure(sonarFile, CoreMetrics.FUNCTIONS, result.getMeasure(PythonMetric.FUNCTIONS));
+    context.saveMeasure(sonarFile, CoreMetrics.CLASSES, result.getMeasure(PythonMetric.CLASSES));
+    context.saveMeasure(sonarFile, CoreMetrics.COMPLEXITY, result.getMeasure(PythonMetric.COMPLEXITY));
+  }
+
+  private void saveFunctionsComplexityDistribution(File sonarFile, SquidFileResult result) {
     RangeDistributionBuilder complexityDistribution = new RangeDistributionBuilder(CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION, FUNCTIONS_DISTRIB_BOTTOM_LIMITS);
-    for (SourceCode squidFunction : squidFunctionsInFile) {
-      complexityDistribution.add(squidFunction.getDouble(PythonMetric.COMPLEXITY));
+    for (Double functionComplexity : result.getFunctionComplexities()) {
+      complexityDistribution.add(functionComplexity);
     }
     context.saveMeasure(sonarFile, complexityDistribution.build().setPersistenceMode(PersistenceMode.MEMORY));
   }
 
-  private void saveFilesComplexityDistribution(File sonarFile, SourceFile squidFile) {
+  private void saveFilesComplexityDistribution(File sonarFile, SquidFileResult result) {
     RangeDistributionBuilder complexityDistribution = new RangeDistributionBuilder(CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION, FILES_DISTRIB_BOTTOM_LIMITS);
-    complexityDistribution.add(squidFile.getDouble(PythonMetric.COMPLEXITY));
+    complexityDistribution.add(result.getMeasure(PythonMetric.COMPLEXITY));
     context.saveMeasure(sonarFile, complexityDistribution.build().setPersistenceMode(PersistenceMode.MEMORY));
   }
 
-  private void saveIssues(File sonarFile, SourceFile squidFile) {
-    Collection<CheckMessage> messages = squidFile.getCheckMessages();
-    if (messages != null) {
-      for (CheckMessage message : messages) {
-        ActiveRule rule = annotationCheckFactory.getActiveRule(message.getCheck());
-        Issuable issuable = resourcePerspectives.as(Issuable.class, sonarFile);
-
-        if (issuable != null) {
-          Issue issue = issuable.newIssueBuilder()
-            .ruleKey(RuleKey.of(rule.getRepositoryKey(), rule.getRuleKey()))
-            .line(message.getLine())
-            .message(message.getText(Locale.ENGLISH))
-            .build();
-          issuable.addIssue(issue);
-        }
+  private void saveIssues(File sonarFile, SquidFileResult result) {
+    for (SquidFileResult.Message message : result.getMessages()) {
+      Issuable issuable = resourcePerspectives.as(Issuable.class, sonarFile);
+
+      if (issuable != null) {
+        Issue issue = issuable.newIssueBuilder()
+          .ruleKey(RuleKey.of(message.getRepositoryKey(), message.getRuleKey()))
+          .line(message.getLine())
+          .message(message.getText())
+          .build();
+        issuable.addIssue(issue);
+      }
+    }
+  }
+
+  /**
+   * Replays what {@link FileLinesVisitor} saves for a file which has not been scanned.
+   */
+  private void saveLines(File sonarFile, SquidFileResult result) {
+    FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(sonarFile);
+    int fileLength = (int) result.getMeasure(PythonMetric.LINES);
+    for (int line = 1; line <= fileLength; line++) {
+      fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, result.isLineOfCode(line) ? 1 : 0);
+      fileLinesContext.setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, line, result.isLineOfComments(line) ? 1 : 0);
+    }
+    fileLinesContext.save();
+  }
+
+  /**
+   * Identifies the active checks and their parameters: cached results are valid only for the same fingerprint.
+   */
+  private String checksFingerprint() {
+    List<String> checks = Lists.newArrayList();
+    for (Object check : annotationCheckFactory.getChecks()) {
+      ActiveRule rule = annotationCheckFactory.getActiveRule(check);
+      List<String> params = Lists.newArrayList();
+      for (ActiveRuleParam param : rule.getActiveRuleParams()) {
+        params.add(param.getKey() + "=" + param.getValue());
       }
+      Collections.sort(params);
+      checks.add(check.getClass().getName() + ":" + rule.getRepositoryKey() + ":" + rule.getRuleKey() + ":" + Joiner.on(',').join(params));
+    }
+    Collections.sort(checks);
+    checks.add("charset=" + fileSystem.sourceCharset().name());
+    checks.add("tokensOnly=" + tokensOnly);
+    checks.add("code=" + Digests.codeFingerprint(PythonSquidSensor.class, PythonAstScanner.class, CheckList.class));
+    return Digests.sha1Hex(Joiner.on('\n').join(checks));
+  }
+
+  @CheckForNull
+  private static String contentHash(java.io.File file) {
+    try {
+      return Digests.sha1Hex(file);
+    } catch (IOException e) {
+      LOG.warn("Cannot read the file '" + file + "', it is not taken from the analysis cache", e);
+      return null;
     }
   }
 
@@ -162,4 +539,75 @@ public final class PythonSquidSensor implements Sensor {
     return getClass().getSimpleName();
   }
 
+  /**
+   * Notified each time a file has been scanned.
+   */
+  private interface ScanListener {
+
+    void scanned(SourceFile squidFile, AnnotationCheckFactory checkFactory);
+
+  }
+
+  /**
+   * Files which remain to be scanned. Each iterator takes the files out of the queue, so that the scanners which iterate
+   * over it concurrently share the files between them.
+   */
+  private static final class FileQueue extends AbstractCollection<java.io.File> {
+
+    private final Queue<java.io.File> files;
+
+    FileQueue(Collection<java.io.File> files) {
+      this.files = new ConcurrentLinkedQueue<java.io.File>(files);
+    }
+
+    @Override
+    public Iterator<java.io.File> iterator() {
+      return new AbstractIterator<java.io.File>() {
+        @Override
+        protected java.io.File computeNext() {
+          java.io.File file = files.poll();
+          return file == null ? endOfData() : file;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return files.size();
+    }
+
+  }
+
+  /**
+   * Scans its files with one scanner and one instance of each check, which are created once and reused for all the files.
+   * The results of each file are passed to the listener as soon as all the visitors have left the file, and its syntax tree
+   * is dropped by the scanner before the next file.
+   */
+  private static final class Scan implements Callable<Void> {
+
+    private final Collection<java.io.File> files;
+    private final AstScanner<Grammar> scanner;
+
+    Scan(final AnnotationCheckFactory checkFactory, PythonConfiguration configuration, SquidAstVisitor<Grammar> fileLinesVisitor,
+      Collection<java.io.File> files, final ScanListener listener) {
+      this.files = files;
+      Collection<SquidAstVisitor<Grammar>> squidChecks = checkFactory.getChecks();
+      List<SquidAstVisitor<Grammar>> visitors = Lists.newArrayList(squidChecks);
+      visitors.add(fileLinesVisitor);
+      SquidAstVisitor<Grammar> resultCollector = new SquidAstVisitor<Grammar>() {
+        @Override
+        public void leaveFile(AstNode astNode) {
+          listener.scanned((SourceFile) getContext().peekSourceCode(), checkFactory);
+        }
+      };
+      this.scanner = PythonAstScanner.create(configuration, resultCollector, visitors);
+    }
+
+    public Void call() {
+      scanner.scanFiles(files);
+      return null;
+    }
+
+  }
+
 }
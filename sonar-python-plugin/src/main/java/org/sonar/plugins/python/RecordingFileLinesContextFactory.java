@@ -0,0 +1,91 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.python;
+
+import com.google.common.collect.Maps;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.resources.Resource;
+
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * Keeps a copy of the lines of code and lines of comments saved for each resource,
+ * so that they can be replayed from the {@link AnalysisCache}.
+ */
+class RecordingFileLinesContextFactory implements FileLinesContextFactory {
+
+  private final FileLinesContextFactory delegate;
+  private final Map<String, BitSet> linesOfCode = Maps.newHashMap();
+  private final Map<String, BitSet> linesOfComments = Maps.newHashMap();
+
+  RecordingFileLinesContextFactory(FileLinesContextFactory delegate) {
+    this.delegate = delegate;
+  }
+
+  public FileLinesContext createFor(Resource resource) {
+    final FileLinesContext context = delegate.createFor(resource);
+    if (resource == null) {
+      return context;
+    }
+    final BitSet code = new BitSet();
+    final BitSet comments = new BitSet();
+    linesOfCode.put(resource.getKey(), code);
+    linesOfComments.put(resource.getKey(), comments);
+
+    return new FileLinesContext() {
+      public void setIntValue(String metricKey, int line, int value) {
+        if (CoreMetrics.NCLOC_DATA_KEY.equals(metricKey)) {
+          code.set(line, value != 0);
+        } else if (CoreMetrics.COMMENT_LINES_DATA_KEY.equals(metricKey)) {
+          comments.set(line, value != 0);
+        }
+        context.setIntValue(metricKey, line, value);
+      }
+
+      public Integer getIntValue(String metricKey, int line) {
+        return context.getIntValue(metricKey, line);
+      }
+
+      public void setStringValue(String metricKey, int line, String value) {
+        context.setStringValue(metricKey, line, value);
+      }
+
+      public String getStringValue(String metricKey, int line) {
+        return context.getStringValue(metricKey, line);
+      }
+
+      public void save() {
+        context.save();
+      }
+    };
+  }
+
+  BitSet getLinesOfCode(Resource resource) {
+    return linesOfCode.get(resource.getKey());
+  }
+
+  BitSet getLinesOfComments(Resource resource) {
+    return linesOfComments.get(resource.getKey());
+  }
+
+}
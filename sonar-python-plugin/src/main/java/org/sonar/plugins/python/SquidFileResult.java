@@ -0,0 +1,123 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.python;
+
+import com.google.common.collect.Lists;
+import org.sonar.python.api.PythonMetric;
+
+import javax.annotation.Nullable;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+
+/**
+ * Everything {@link PythonSquidSensor} saves for one file, detached from the squid source tree
+ * so that it can be kept in the {@link AnalysisCache}.
+ */
+class SquidFileResult implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final EnumMap<PythonMetric, Double> measures = new EnumMap<PythonMetric, Double>(PythonMetric.class);
+  private final List<Double> functionComplexities = Lists.newArrayList();
+  private final List<Message> messages = Lists.newArrayList();
+  private BitSet linesOfCode;
+  private BitSet linesOfComments;
+
+  void setMeasure(PythonMetric metric, double value) {
+    measures.put(metric, value);
+  }
+
+  double getMeasure(PythonMetric metric) {
+    Double value = measures.get(metric);
+    return value == null ? 0.0 : value;
+  }
+
+  void addFunctionComplexity(double complexity) {
+    functionComplexities.add(complexity);
+  }
+
+  List<Double> getFunctionComplexities() {
+    return functionComplexities;
+  }
+
+  void addMessage(String repositoryKey, String ruleKey, @Nullable Integer line, String text) {
+    messages.add(new Message(repositoryKey, ruleKey, line, text));
+  }
+
+  List<Message> getMessages() {
+    return messages;
+  }
+
+  void setLines(BitSet linesOfCode, BitSet linesOfComments) {
+    this.linesOfCode = linesOfCode;
+    this.linesOfComments = linesOfComments;
+  }
+
+  boolean hasLines() {
+    return linesOfCode != null;
+  }
+
+  boolean isLineOfCode(int line) {
+    return linesOfCode.get(line);
+  }
+
+  boolean isLineOfComments(int line) {
+    return linesOfComments.get(line);
+  }
+
+  static class Message implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String repositoryKey;
+    private final String ruleKey;
+    private final Integer line;
+    private final String text;
+
+    Message(String repositoryKey, String ruleKey, @Nullable Integer line, String text) {
+      this.repositoryKey = repositoryKey;
+      this.ruleKey = ruleKey;
+      this.line = line;
+      this.text = text;
+    }
+
+    String getRepositoryKey() {
+      return repositoryKey;
+    }
+
+    String getRuleKey() {
+      return ruleKey;
+    }
+
+    @Nullable
+    Integer getLine() {
+      return line;
+    }
+
+    String getText() {
+      return text;
+    }
+
+  }
+
+}
@@ -19,7 +19,11 @@
  */
 package org.sonar.plugins.python.pylint;
 
-class Issue {
+import java.io.Serializable;
+
+class Issue implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private final String filename;
   private final int line;
@@ -21,23 +21,70 @@ package org.sonar.plugins.python.pylint;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.command.Command;
+import org.sonar.api.utils.command.CommandException;
 import org.sonar.api.utils.command.CommandExecutor;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class PylintArguments {
 
+  private static final Logger LOG = LoggerFactory.getLogger(PylintArguments.class);
+
+  // the arguments of a pylint executable are kept as long as the executable is not modified, see #forExecutable()
+  private static final Map<String, PylintArguments> CACHE = new ConcurrentHashMap<String, PylintArguments>();
+
   private static final Pattern PYLINT_VERSION_PATTERN = Pattern.compile(".*pylint[^ ]* ([0-9\\.]+).*");
   private static final String[] ARGS_PYLINT_0_X = {"-i", "y", "-f", "parseable", "-r", "n"};
+  // line of "pylint --list-msgs" which starts the description of a message, such as ":unused-import (W0611): *Unused import %s*"
+  private static final Pattern MESSAGE_PATTERN = Pattern.compile(":([a-z0-9-]+) \\(([A-Z][0-9]{4})\\):.*");
+  private static final long LIST_MESSAGES_TIMEOUT_MS = 30000;
   private static final String[] ARGS_PYLINT_1_X = {"--msg-template", "{path}:{line}: [{msg_id}({symbol}), {obj}] {msg}", "-r", "n"};
 
+  private final String executable;
+  private final String version;
   private final String[] arguments;
+  private volatile Map<String, String> messageIdsBySymbol;
 
   public PylintArguments(Command command) {
-    String pylintVersion = pylintVersion(command);
-    this.arguments = pylintVersion.startsWith("0") ? ARGS_PYLINT_0_X : ARGS_PYLINT_1_X;
+    long start = System.currentTimeMillis();
+    this.executable = command.getExecutable();
+    this.version = pylintVersion(command);
+    this.arguments = version.startsWith("0") ? ARGS_PYLINT_0_X : ARGS_PYLINT_1_X;
+    LOG.info("Pylint version {} detected in {} ms", version, System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Returns the arguments of the given pylint executable, running it only if it has not been seen
+   * before or if it has been modified since. An executable looked up in the PATH is always run.
+   */
+  static PylintArguments forExecutable(String pylint) {
+    File executable = new File(pylint);
+    if (!executable.isFile()) {
+      return new PylintArguments(versionCommand(pylint));
+    }
+    String key = executable.getAbsolutePath() + "@" + executable.lastModified();
+    PylintArguments arguments = CACHE.get(key);
+    if (arguments == null) {
+      arguments = new PylintArguments(versionCommand(pylint));
+      CACHE.put(key, arguments);
+    } else {
+      LOG.debug("Reusing the detected pylint version {} of '{}'", arguments.version, pylint);
+    }
+    return arguments;
+  }
+
+  private static Command versionCommand(String pylint) {
+    return Command.create(pylint).addArgument("--version");
   }
 
   private static String pylintVersion(Command command) {
@@ -58,8 +105,60 @@ public class PylintArguments {
     throw new IllegalArgumentException(message);
   }
 
+  public String version() {
+    return version;
+  }
+
+  /**
+   * @return true if the detected version is strictly older than the given major.minor one
+   */
+  public boolean isOlderThan(int major, int minor) {
+    String[] parts = version.split("\\.");
+    int detectedMajor = Integer.parseInt(parts[0]);
+    int detectedMinor = parts.length > 1 && parts[1].length() > 0 ? Integer.parseInt(parts[1]) : 0;
+    return detectedMajor < major || (detectedMajor == major && detectedMinor < minor);
+  }
+
   public String[] arguments() {
     return arguments;
   }
 
+  /**
+   * Ids of the messages by their symbolic name, listed by pylint the first time they are needed. Pylint versions which do not
+   * have symbolic names, or which cannot list their messages, give an empty map.
+   */
+  public Map<String, String> messageIdsBySymbol() {
+    Map<String, String> ids = messageIdsBySymbol;
+    if (ids == null) {
+      ids = listMessageIdsBySymbol();
+      messageIdsBySymbol = ids;
+    }
+    return ids;
+  }
+
+  private Map<String, String> listMessageIdsBySymbol() {
+    Command command = Command.create(executable).addArgument("--list-msgs");
+    CommandStreamConsumer out = new CommandStreamConsumer();
+    CommandStreamConsumer err = new CommandStreamConsumer();
+    try {
+      CommandExecutor.create().execute(command, out, err, LIST_MESSAGES_TIMEOUT_MS);
+    } catch (CommandException e) {
+      LOG.warn("Cannot list the messages of pylint with the command \"" + command.toCommandLine() + "\": "
+        + "the messages disabled by their symbolic name in the pylint configuration file may be enabled again", e);
+      return Collections.emptyMap();
+    }
+    return parseMessageIdsBySymbol(out.getData());
+  }
+
+  static Map<String, String> parseMessageIdsBySymbol(List<String> messageList) {
+    Map<String, String> ids = Maps.newHashMap();
+    for (String line : messageList) {
+      Matcher matcher = MESSAGE_PATTERN.matcher(line);
+      if (matcher.matches()) {
+        ids.put(matcher.group(1), matcher.group(2));
+      }
+    }
+    return ids;
+  }
+
 }
@@ -25,8 +25,10 @@ import org.sonar.api.Properties;
 import org.sonar.api.Property;
 import org.sonar.api.config.Settings;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.plugins.python.PythonReportSensor;
 
 import java.io.File;
+import java.util.List;
 
 @Properties({
   @Property(
@@ -42,12 +44,91 @@ import java.io.File;
     name = "pylint executable",
     description = "Path to the pylint executable to use in pylint analysis. Set to empty to use the default one.",
     global = true,
+    project = false),
+  @Property(
+    key = PylintConfiguration.PYLINT_BATCH_SIZE_KEY,
+    defaultValue = "1",
+    name = "pylint batch size",
+    description = "Number of files passed to a single pylint invocation. Bigger batches save the startup time of pylint, at the price of a bigger memory footprint.",
+    global = true,
+    project = true),
+  @Property(
+    key = PylintConfiguration.PYLINT_THREADS_KEY,
+    defaultValue = "0",
+    name = "pylint processes",
+    description = "Maximum number of pylint processes running at the same time. Set to 0 to use the number of available processors.",
+    global = true,
+    project = true),
+  @Property(
+    key = PylintConfiguration.PYLINT_TIMEOUT_KEY,
+    defaultValue = "300",
+    name = "pylint timeout",
+    description = "Maximum time in seconds given to a single pylint process.",
+    global = true,
+    project = true),
+  @Property(
+    key = PylintConfiguration.PYLINT_CACHE_KEY,
+    defaultValue = "false",
+    name = "pylint cache",
+    description = "Keep the pylint issues of each file in the working directory, and reuse them in the next analysis for the files which have not changed. "
+      + "The cache is dropped as soon as the pylint version, its arguments or its configuration file change.",
+    global = true,
+    project = true),
+  @Property(
+    key = PylintConfiguration.PYLINT_ACTIVE_RULES_ONLY_KEY,
+    defaultValue = "true",
+    name = "Run only the active pylint rules",
+    description = "Let pylint check only the messages of the rules activated in the quality profile, instead of all the messages enabled in the pylint configuration. "
+      + "The messages disabled by the \"disable\" option of the pylint configuration file stay disabled, whether they are given by their id, "
+      + "their symbolic name or their category.",
+    global = true,
+    project = true),
+  @Property(
+    key = PylintConfiguration.PYLINT_ARCHIVE_OUTPUT_KEY,
+    defaultValue = "false",
+    name = "Archive pylint output",
+    description = "Keep the raw output of pylint in a zip file of the working directory, for troubleshooting purposes.",
+    global = true,
+    project = true),
+  @Property(
+    key = PylintConfiguration.PYLINT_REPORT_PATH_KEY,
+    defaultValue = "",
+    name = "pylint report(s)",
+    description = "Path to pylint reports produced outside of Sonar, relative to projects' root. Ant patterns are accepted. "
+      + "Both the parseable text format and the JSON format are supported. When set, pylint is not run by Sonar.",
+    global = false,
+    project = true),
+  @Property(
+    key = PylintConfiguration.PYLINT_DAEMON_KEY,
+    defaultValue = "false",
+    name = "pylint daemon",
+    description = "Run pylint inside long-lived Python processes, one per pylint process allowed to run at the same time, "
+      + "instead of starting a new pylint process for each batch of files. Requires pylint to be importable by the Python interpreter.",
+    global = true,
+    project = true),
+  @Property(
+    key = PylintConfiguration.PYTHON_KEY,
+    defaultValue = "",
+    name = "Python interpreter",
+    description = "Path to the Python interpreter running the pylint daemon. Set to empty to use the one of the PATH.",
+    global = true,
     project = false)
 })
 public class PylintConfiguration implements BatchExtension {
 
   public static final String PYLINT_CONFIG_KEY = "sonar.python.pylint_config";
   public static final String PYLINT_KEY = "sonar.python.pylint";
+  public static final String PYLINT_BATCH_SIZE_KEY = "sonar.python.pylint.batch_size";
+  public static final String PYLINT_THREADS_KEY = "sonar.python.pylint.threads";
+  public static final String PYLINT_TIMEOUT_KEY = "sonar.python.pylint.timeout";
+  public static final String PYLINT_CACHE_KEY = "sonar.python.pylint.cache";
+  public static final String PYLINT_ACTIVE_RULES_ONLY_KEY = "sonar.python.pylint.active_rules_only";
+  public static final String PYLINT_ARCHIVE_OUTPUT_KEY = "sonar.python.pylint.archive_output";
+  public static final String PYLINT_REPORT_PATH_KEY = "sonar.python.pylint.reportPath";
+  public static final String PYLINT_DAEMON_KEY = "sonar.python.pylint.daemon";
+  public static final String PYTHON_KEY = "sonar.python.python";
+
+  private static final String FALLBACK_PYTHON = "python";
 
   private final Settings conf;
 
@@ -72,4 +153,51 @@ public class PylintConfiguration implements BatchExtension {
     return conf.getString(PylintConfiguration.PYLINT_KEY);
   }
 
+  public int getBatchSize() {
+    return Math.max(1, conf.getInt(PylintConfiguration.PYLINT_BATCH_SIZE_KEY));
+  }
+
+  public int getThreads() {
+    int threads = conf.getInt(PylintConfiguration.PYLINT_THREADS_KEY);
+    return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * @return the timeout of a single pylint process, in milliseconds
+   */
+  public long getTimeout() {
+    String timeout = conf.getString(PylintConfiguration.PYLINT_TIMEOUT_KEY);
+    return StringUtils.isBlank(timeout) ? PylintIssuesAnalyzer.DEFAULT_TIMEOUT_MS : conf.getLong(PylintConfiguration.PYLINT_TIMEOUT_KEY) * 1000;
+  }
+
+  public boolean isCacheEnabled() {
+    return conf.getBoolean(PylintConfiguration.PYLINT_CACHE_KEY);
+  }
+
+  public boolean isActiveRulesOnly() {
+    String activeRulesOnly = conf.getString(PylintConfiguration.PYLINT_ACTIVE_RULES_ONLY_KEY);
+    return StringUtils.isBlank(activeRulesOnly) || conf.getBoolean(PylintConfiguration.PYLINT_ACTIVE_RULES_ONLY_KEY);
+  }
+
+  public boolean isOutputArchived() {
+    return conf.getBoolean(PylintConfiguration.PYLINT_ARCHIVE_OUTPUT_KEY);
+  }
+
+  public boolean isReportImport() {
+    return StringUtils.isNotBlank(conf.getString(PylintConfiguration.PYLINT_REPORT_PATH_KEY));
+  }
+
+  public List<File> getReports(ModuleFileSystem fileSystem) {
+    return PythonReportSensor.getReports(conf, fileSystem.baseDir().getPath(), PylintConfiguration.PYLINT_REPORT_PATH_KEY, "");
+  }
+
+  public boolean isDaemon() {
+    return conf.getBoolean(PylintConfiguration.PYLINT_DAEMON_KEY);
+  }
+
+  public String getPythonPath() {
+    String python = conf.getString(PylintConfiguration.PYTHON_KEY);
+    return StringUtils.isBlank(python) ? FALLBACK_PYTHON : python;
+  }
+
 }
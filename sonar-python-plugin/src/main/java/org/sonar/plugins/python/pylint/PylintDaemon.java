@@ -0,0 +1,254 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.python.pylint;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.SonarException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived helper process which imports pylint once and analyses the files it receives over its standard input,
+ * see pylint_daemon.py. The process is started lazily, and started again after a crash, a timeout, or a given
+ * number of requests so that the memory held by pylint between two requests does not accumulate.
+ * A daemon serves one request at a time.
+ */
+class PylintDaemon implements Closeable {
+
+  static final String END_MARKER = "@@sonar-pylint-end@@";
+
+  /**
+   * Starts the line which reports that pylint failed on the files of a request, before the end marker.
+   */
+  static final String ERROR_PREFIX = END_MARKER + ":error:";
+
+  static final int DEFAULT_MAX_REQUESTS = 100;
+
+  private static final Logger LOG = LoggerFactory.getLogger(PylintDaemon.class);
+
+  private final List<String> command;
+  private final int maxRequests;
+
+  private Process process;
+  private int requests;
+  private Writer stdIn;
+  private BlockingQueue<Line> stdOut;
+
+  /**
+   * @param command starts the helper, its first argument after the script must be {@link #END_MARKER}
+   */
+  PylintDaemon(List<String> command) {
+    this(command, DEFAULT_MAX_REQUESTS);
+  }
+
+  /**
+   * @param maxRequests number of requests served by a process before it is replaced by a new one
+   */
+  PylintDaemon(List<String> command, int maxRequests) {
+    this.command = ImmutableList.copyOf(command);
+    this.maxRequests = maxRequests;
+  }
+
+  /**
+   * @return the issues, or null if pylint failed or did not answer in time: the batch is skipped, and the process is
+   * restarted after a timeout only
+   */
+  @CheckForNull
+  List<Issue> analyze(List<String> paths, long timeoutMS, @Nullable List<String> rawOutput) {
+    try {
+      try {
+        return request(paths, timeoutMS, rawOutput);
+      } catch (StoppedException e) {
+        LOG.warn("The pylint daemon stopped unexpectedly, starting it again");
+        return request(paths, timeoutMS, rawOutput);
+      }
+    } catch (StoppedException e) {
+      throw new SonarException("The pylint daemon stopped unexpectedly twice, see the debug logs for its error output", e);
+    } catch (TimeoutException e) {
+      LOG.warn("Timeout exceeded: {} ms, the pylint daemon is started again and the file(s) '{}' are not analysed", timeoutMS, Joiner.on("', '").join(paths));
+      return null;
+    }
+  }
+
+  private List<Issue> request(List<String> paths, long timeoutMS, @Nullable List<String> rawOutput) throws StoppedException, TimeoutException {
+    if (process != null && requests >= maxRequests) {
+      LOG.debug("The pylint daemon served {} requests, starting a new one", requests);
+      stop();
+    }
+    if (process == null) {
+      start();
+    }
+    requests++;
+    try {
+      stdIn.write(Joiner.on('\t').join(paths));
+      stdIn.write('\n');
+      stdIn.flush();
+    } catch (IOException e) {
+      LOG.debug("Cannot send the files to the pylint daemon", e);
+      stop();
+      throw new StoppedException();
+    }
+
+    List<Issue> issues = new LinkedList<Issue>();
+    String error = null;
+    long deadline = System.currentTimeMillis() + timeoutMS;
+    while (true) {
+      Line next = nextLine(deadline - System.currentTimeMillis());
+      if (next == null) {
+        stop();
+        throw new TimeoutException();
+      } else if (next == Line.END_OF_STREAM) {
+        stop();
+        throw new StoppedException();
+      }
+      String line = next.value;
+      if (END_MARKER.equals(line)) {
+        return error == null ? issues : null;
+      }
+      if (line.startsWith(ERROR_PREFIX)) {
+        error = line.substring(ERROR_PREFIX.length());
+        LOG.warn("Pylint failed on the file(s) '{}', they are not analysed: {}", Joiner.on("', '").join(paths), error);
+        continue;
+      }
+
+      if (rawOutput != null) {
+        rawOutput.add(line);
+      }
+      Issue issue = PylintIssuesAnalyzer.parseLine(line);
+      if (issue != null) {
+        issues.add(issue);
+      }
+    }
+  }
+
+  @CheckForNull
+  private Line nextLine(long timeoutMS) {
+    try {
+      return stdOut.poll(Math.max(0, timeoutMS), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      stop();
+      Thread.currentThread().interrupt();
+      throw new SonarException("Interrupted while waiting for the pylint daemon", e);
+    }
+  }
+
+  private void start() {
+    LOG.debug("Starting the pylint daemon: '{}'", Joiner.on(' ').join(command));
+    ProcessBuilder builder = new ProcessBuilder(command);
+    builder.environment().put("PYTHONIOENCODING", "utf-8");
+    try {
+      process = builder.start();
+    } catch (IOException e) {
+      throw new SonarException("Cannot start the pylint daemon: " + Joiner.on(' ').join(command), e);
+    }
+    stdIn = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), Charsets.UTF_8));
+    stdOut = new LinkedBlockingQueue<Line>();
+    requests = 0;
+    startReader("pylint-daemon-stdout", process.getInputStream(), stdOut);
+    startReader("pylint-daemon-stderr", process.getErrorStream(), null);
+  }
+
+  /**
+   * Lines are read by dedicated threads, so that the wait for an answer can time out.
+   */
+  private static void startReader(String name, final InputStream stream, @Nullable final BlockingQueue<Line> lines) {
+    Thread reader = new Thread(name) {
+      @Override
+      public void run() {
+        BufferedReader in = new BufferedReader(new InputStreamReader(stream, Charsets.UTF_8));
+        try {
+          String line;
+          while ((line = in.readLine()) != null) {
+            if (lines == null) {
+              LOG.debug("pylint daemon: {}", line);
+            } else {
+              lines.add(new Line(line));
+            }
+          }
+        } catch (IOException e) {
+          LOG.debug("Cannot read the output of the pylint daemon", e);
+        } finally {
+          IOUtils.closeQuietly(in);
+          if (lines != null) {
+            lines.add(Line.END_OF_STREAM);
+          }
+        }
+      }
+    };
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  private void stop() {
+    if (process != null) {
+      IOUtils.closeQuietly(stdIn);
+      process.destroy();
+      process = null;
+    }
+  }
+
+  public void close() {
+    stop();
+  }
+
+  /**
+   * A line of the standard output, or the end of the stream.
+   */
+  private static final class Line {
+
+    static final Line END_OF_STREAM = new Line(null);
+
+    final String value;
+
+    Line(@Nullable String value) {
+      this.value = value;
+    }
+
+  }
+
+  private static final class StoppedException extends Exception {
+    private static final long serialVersionUID = 1L;
+  }
+
+  private static final class TimeoutException extends Exception {
+    private static final long serialVersionUID = 1L;
+  }
+
+}
@@ -19,7 +19,13 @@
  */
 package org.sonar.plugins.python.pylint;
 
-import com.google.common.collect.ImmutableMap;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.BiMap;
+import com.google.common.collect.ImmutableBiMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.io.Files;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -27,13 +33,22 @@ import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.command.Command;
 import org.sonar.api.utils.command.CommandExecutor;
+import org.sonar.api.utils.command.StreamConsumer;
+import org.sonar.plugins.python.Digests;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,7 +59,7 @@ public class PylintIssuesAnalyzer {
   // Pylint 0.24 brings a nasty reidentifying of some rules...
   // To avoid burdening of users with rule clones we map the ids.
   // This workaround can die as soon as pylints <= 0.23.X become obsolete.
-  private static final Map<String, String> ID_MAP = ImmutableMap.<String, String>builder()
+  private static final BiMap<String, String> ID_MAP = ImmutableBiMap.<String, String>builder()
     .put("E9900", "E1300")
     .put("E9901", "E1301")
     .put("E9902", "E1302")
@@ -57,28 +72,164 @@ public class PylintIssuesAnalyzer {
     .put("W9901", "W1301")
     .build();
 
+  static final long DEFAULT_TIMEOUT_MS = 300000; // =5min
+
   private static final String FALLBACK_PYLINT = "pylint";
   private static final Pattern PATTERN = Pattern.compile("(.+):([0-9]+): \\[(.*)\\] (.*)");
+  private static final Pattern DISABLE_OPTION = Pattern.compile("disable\\s*[=:](.*)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern MESSAGE_ID = Pattern.compile("[a-z][0-9]{4}");
+  private static final String ALL_MESSAGES = "all";
 
   private String pylint = null;
+  private String pylintConfigPath = null;
   private String pylintConfigParam = null;
   private PylintArguments pylintArguments;
+  private List<String> messageArguments = Collections.emptyList();
 
   PylintIssuesAnalyzer(String pylintPath, String pylintConfigPath) {
-    this(pylintPath, pylintConfigPath, new PylintArguments(Command.create(pylintPathWithDefault(pylintPath)).addArgument("--version")));
+    this(pylintPath, pylintConfigPath, arguments(pylintPath));
   }
 
   PylintIssuesAnalyzer(String pylintPath, String pylintConfigPath, PylintArguments arguments) {
+    this(pylintPath, pylintConfigPath, arguments, null);
+  }
+
+  /**
+   * @param enabledRuleIds ids of the only messages pylint has to check, or null to let pylint decide. Those disabled
+   *                       by the configuration file stay disabled.
+   */
+  PylintIssuesAnalyzer(String pylintPath, String pylintConfigPath, PylintArguments arguments, @Nullable Collection<String> enabledRuleIds) {
     pylint = pylintPathWithDefault(pylintPath);
 
     if (pylintConfigPath != null) {
       if (!new File(pylintConfigPath).exists()) {
         throw new SonarException("Cannot find the pylint configuration file: " + pylintConfigPath);
       }
+      this.pylintConfigPath = pylintConfigPath;
       pylintConfigParam = "--rcfile=" + pylintConfigPath;
     }
     
     pylintArguments = arguments;
+    if (enabledRuleIds != null) {
+      Set<String> disabledMessages = pylintConfigPath == null ? Collections.<String>emptySet() : disabledMessages(new File(pylintConfigPath));
+      if (hasSymbolicNames(disabledMessages)) {
+        disabledMessages = withMessageIds(disabledMessages, arguments.messageIdsBySymbol());
+      }
+      messageArguments = createMessageArguments(enabledRuleIds, arguments.isOlderThan(0, 24), disabledMessages);
+    }
+  }
+
+  /**
+   * Reads the ids, categories or symbolic names of the messages disabled by the "disable" option of a pylint configuration file,
+   * which can be continued on the following indented lines. Those messages would be enabled again by the --enable argument.
+   */
+  static Set<String> disabledMessages(File pylintConfig) {
+    List<String> lines;
+    try {
+      lines = Files.readLines(pylintConfig, Charsets.UTF_8);
+    } catch (IOException e) {
+      throw new SonarException("Cannot read the pylint configuration file: " + pylintConfig, e);
+    }
+    Set<String> messages = Sets.newHashSet();
+    boolean inDisableOption = false;
+    for (String line : lines) {
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith(";")) {
+        continue;
+      }
+      String value;
+      if (Character.isWhitespace(line.charAt(0))) {
+        value = inDisableOption ? trimmed : null;
+      } else {
+        Matcher matcher = DISABLE_OPTION.matcher(trimmed);
+        inDisableOption = matcher.matches();
+        value = inDisableOption ? matcher.group(1) : null;
+      }
+      if (value != null) {
+        for (String message : StringUtils.split(value, ", \t")) {
+          messages.add(message.toLowerCase(Locale.ENGLISH));
+        }
+      }
+    }
+    return messages;
+  }
+
+  private static boolean hasSymbolicNames(Set<String> messages) {
+    for (String message : messages) {
+      if (isSymbolicName(message)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isSymbolicName(String message) {
+    return message.length() > 1 && !ALL_MESSAGES.equals(message) && !MESSAGE_ID.matcher(message).matches();
+  }
+
+  /**
+   * Adds the ids of the messages given by their symbolic name, with their ids before and after pylint 0.24,
+   * so that they are not enabled again whatever the version which gave the symbolic names.
+   */
+  static Set<String> withMessageIds(Set<String> messages, Map<String, String> messageIdsBySymbol) {
+    Set<String> withIds = Sets.newHashSet(messages);
+    for (String message : messages) {
+      String messageId = messageIdsBySymbol.get(message);
+      if (messageId != null) {
+        withIds.add(messageId.toLowerCase(Locale.ENGLISH));
+        String otherId = ID_MAP.containsKey(messageId) ? ID_MAP.get(messageId) : ID_MAP.inverse().get(messageId);
+        if (otherId != null) {
+          withIds.add(otherId.toLowerCase(Locale.ENGLISH));
+        }
+      } else if (isSymbolicName(message)) {
+        LOG.warn("Unknown pylint message \"{}\" in the disable option of the pylint configuration file", message);
+      }
+    }
+    return withIds;
+  }
+
+  /**
+   * Disables all the messages but the given ones, with the ids known by the pylint version:
+   * the reverse of {@link #ruleId(String)}. Messages disabled by their id or their category are not enabled.
+   */
+  private static List<String> createMessageArguments(Collection<String> ruleIds, boolean oldIds, Set<String> disabledMessages) {
+    Map<String, String> idMap = oldIds ? ID_MAP.inverse() : ID_MAP;
+    Set<String> messageIds = Sets.newTreeSet();
+    for (String ruleId : ruleIds) {
+      String messageId = idMap.containsKey(ruleId) ? idMap.get(ruleId) : ruleId;
+      if (!isDisabled(ruleId, disabledMessages) && !isDisabled(messageId, disabledMessages)) {
+        messageIds.add(messageId);
+      }
+    }
+    if (messageIds.isEmpty()) {
+      return ImmutableList.of("--disable=all");
+    }
+    return ImmutableList.of("--disable=all", "--enable=" + Joiner.on(',').join(messageIds));
+  }
+
+  private static boolean isDisabled(String messageId, Set<String> disabledMessages) {
+    String id = messageId.toLowerCase(Locale.ENGLISH);
+    return disabledMessages.contains(ALL_MESSAGES) || disabledMessages.contains(id) || (!id.isEmpty() && disabledMessages.contains(id.substring(0, 1)));
+  }
+
+  /**
+   * @return the arguments passed to pylint before the files to analyse
+   */
+  List<String> commandArguments() {
+    List<String> arguments = Lists.newArrayList(pylintArguments.arguments());
+    arguments.addAll(messageArguments);
+    if (pylintConfigParam != null) {
+      arguments.add(pylintConfigParam);
+    }
+    return arguments;
+  }
+
+  List<String> getMessageArguments() {
+    return messageArguments;
+  }
+
+  static PylintArguments arguments(String pylintPath) {
+    return PylintArguments.forExecutable(pylintPathWithDefault(pylintPath));
   }
 
   private static String pylintPathWithDefault(String pylintPath) {
@@ -91,17 +242,37 @@ public class PylintIssuesAnalyzer {
     return FALLBACK_PYLINT;
   }
 
-  public List<Issue> analyze(String path, Charset charset, File out) throws IOException {
-    Command command = Command.create(pylint).addArguments(pylintArguments.arguments()).addArgument(path);
-
-    if (pylintConfigParam != null) {
-      command.addArgument(pylintConfigParam);
+  /**
+   * Identifies what the issues depend on, apart from the analysed files: the pylint version,
+   * the arguments, the content of the configuration file and the build of the plugin.
+   */
+  String fingerprint() throws IOException {
+    List<String> parts = Lists.newArrayList(pylint, pylintArguments.version(), Digests.codeFingerprint(PylintIssuesAnalyzer.class));
+    parts.addAll(Arrays.asList(pylintArguments.arguments()));
+    parts.addAll(messageArguments);
+    if (pylintConfigPath != null) {
+      parts.add(pylintConfigParam);
+      parts.add(Digests.sha1Hex(new File(pylintConfigPath)));
     }
+    return Digests.sha1Hex(Joiner.on('\n').join(parts));
+  }
+
+  public List<Issue> analyze(String path) {
+    return analyze(ImmutableList.of(path), DEFAULT_TIMEOUT_MS, null);
+  }
+
+  /**
+   * Runs a single pylint process on all the given files. The issues of all files are returned together,
+   * {@link Issue#getFilename()} tells which file they belong to. The output of pylint is parsed while it is read.
+   *
+   * @param rawOutput if not null, receives the lines of the output as well
+   */
+  public List<Issue> analyze(List<String> paths, long timeoutMS, @Nullable List<String> rawOutput) {
+    Command command = Command.create(pylint).addArguments(commandArguments()).addArguments(paths);
 
     LOG.debug("Calling command: '{}'", command.toString());
 
-    long timeoutMS = 300000; // =5min
-    CommandStreamConsumer stdOut = new CommandStreamConsumer();
+    IssueConsumer stdOut = new IssueConsumer(rawOutput);
     CommandStreamConsumer stdErr = new CommandStreamConsumer();
     CommandExecutor.create().execute(command, stdOut, stdErr, timeoutMS);
 
@@ -112,58 +283,56 @@ public class PylintIssuesAnalyzer {
       LOG.warn("Content of the error stream: \n\"{}\"", StringUtils.join(stdErr.getData(), "\n"));
     }
 
-    Files.write(StringUtils.join(stdOut.getData(), "\n"), out, charset);
-
-    return parseOutput(stdOut.getData());
+    return stdOut.issues;
   }
 
   protected List<Issue> parseOutput(List<String> lines) {
-    // Parse the output of pylint. Example of the format:
+    List<Issue> issues = new LinkedList<Issue>();
+    for (String line : lines) {
+      Issue issue = parseLine(line);
+      if (issue != null) {
+        issues.add(issue);
+      }
+    }
+    return issues;
+  }
+
+  @CheckForNull
+  static Issue parseLine(String line) {
+    // Parse a line of the output of pylint. Example of the format:
     //
     // complexity/code_chunks.py:62: [W0104, list_compr] Statement seems to have no effect
     // complexity/code_chunks.py:64: [C0111, list_compr_filter] Missing docstring
     // ...
 
-    List<Issue> issues = new LinkedList<Issue>();
+    if (line.length() > 0) {
+      if (!isDetail(line)) {
+        Matcher m = PATTERN.matcher(line);
+        if (m.matches() && m.groupCount() == 4) {
+          String filename = m.group(1);
+          int linenr = Integer.valueOf(m.group(2));
+          String[] parts = m.group(3).split(",");
 
-    int linenr;
-    String filename = null;
-    String ruleid = null;
-    String objname = null;
-    String descr = null;
-
-    if (!lines.isEmpty()) {
-      for (String line : lines) {
-        if (line.length() > 0) {
-          if (!isDetail(line)) {
-            Matcher m = PATTERN.matcher(line);
-            if (m.matches() && m.groupCount() == 4) {
-              filename = m.group(1);
-              linenr = Integer.valueOf(m.group(2));
-              String[] parts = m.group(3).split(",");
-
-              ruleid = ruleId(parts[0].trim());
-
-              if (parts.length == 2) {
-                objname = parts[1].trim();
-              }
-
-              descr = m.group(4);
-              issues.add(new Issue(filename, linenr, ruleid, objname, descr));
-            } else {
-              LOG.debug("Cannot parse the line: {}", line);
-            }
-          } else {
-            LOG.trace("Classifying as detail and ignoring line '{}'", line);
+          String ruleid = ruleId(parts[0].trim());
+
+          String objname = null;
+          if (parts.length == 2) {
+            objname = parts[1].trim();
           }
+
+          String descr = m.group(4);
+          return new Issue(filename, linenr, ruleid, objname, descr);
+        } else {
+          LOG.debug("Cannot parse the line: {}", line);
         }
+      } else {
+        LOG.trace("Classifying as detail and ignoring line '{}'", line);
       }
     }
-
-    return issues;
+    return null;
   }
 
-  private String ruleId(String ruleAndMessageIds) {
+  static String ruleId(String ruleAndMessageIds) {
     String ruleid = ruleAndMessageIds;
     int parenthesisIndex = ruleid.indexOf('(');
     if (parenthesisIndex > -1) {
@@ -175,9 +344,33 @@ public class PylintIssuesAnalyzer {
     return ruleid;
   }
 
-  private boolean isDetail(String line) {
+  private static boolean isDetail(String line) {
     char first = line.charAt(0);
     return first == ' ' || first == '\t' || first == '\n';
   }
 
+  /**
+   * Parses the lines of the standard output as soon as they are read, instead of buffering them.
+   */
+  private final class IssueConsumer implements StreamConsumer {
+
+    private final List<Issue> issues = new LinkedList<Issue>();
+    private final List<String> rawOutput;
+
+    IssueConsumer(@Nullable List<String> rawOutput) {
+      this.rawOutput = rawOutput;
+    }
+
+    public void consumeLine(String line) {
+      if (rawOutput != null) {
+        rawOutput.add(line);
+      }
+      Issue issue = parseLine(line);
+      if (issue != null) {
+        issues.add(issue);
+      }
+    }
+
+  }
+
 }
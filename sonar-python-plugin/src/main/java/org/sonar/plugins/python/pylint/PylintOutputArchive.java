@@ -0,0 +1,74 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.python.pylint;
+
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.utils.SonarException;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Raw output of all the pylint processes of an analysis, kept in a single zip file with one entry per process.
+ */
+class PylintOutputArchive implements Closeable {
+
+  private final File file;
+  private final Charset charset;
+  private final ZipOutputStream out;
+
+  PylintOutputArchive(File file, Charset charset) {
+    this.file = file;
+    this.charset = charset;
+    try {
+      this.out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    } catch (IOException e) {
+      throw new SonarException("Cannot create the pylint output archive: " + file, e);
+    }
+  }
+
+  /**
+   * Called by concurrent pylint workers, entries are written one at a time.
+   */
+  synchronized void add(String name, List<String> lines) {
+    try {
+      out.putNextEntry(new ZipEntry(name));
+      for (String line : lines) {
+        out.write(line.getBytes(charset));
+        out.write('\n');
+      }
+      out.closeEntry();
+    } catch (IOException e) {
+      throw new SonarException("Cannot write the pylint output archive: " + file, e);
+    }
+  }
+
+  public synchronized void close() {
+    IOUtils.closeQuietly(out);
+  }
+
+}
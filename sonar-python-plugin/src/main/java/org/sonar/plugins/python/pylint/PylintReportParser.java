@@ -0,0 +1,188 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.python.pylint;
+
+import com.google.common.collect.Maps;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.SonarException;
+
+import javax.annotation.CheckForNull;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the issues of a pylint report produced outside of Sonar, either in the parseable text format
+ * or in the JSON format of pylint ('-f json'). Reports are read as a stream, one message at a time, JSON ones with the streaming
+ * reader of Gson.
+ * Messages which cannot be understood are skipped, and a malformed JSON report keeps the issues read before the error.
+ */
+class PylintReportParser {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PylintReportParser.class);
+
+  private PylintReportParser() {
+  }
+
+  static List<Issue> parse(File report, Charset charset) {
+    PushbackReader reader = null;
+    try {
+      reader = new PushbackReader(new BufferedReader(new InputStreamReader(new FileInputStream(report), charset)));
+      if (!isJson(reader)) {
+        return parseText(new BufferedReader(reader));
+      }
+      List<Issue> issues = new LinkedList<Issue>();
+      try {
+        parseJson(reader, issues);
+      } catch (MalformedReportException e) {
+        LOG.warn("The pylint report '{}' is malformed, only its {} first issue(s) are imported: {}", new Object[] {report, issues.size(), e.getMessage()});
+      }
+      return issues;
+    } catch (IOException e) {
+      throw new SonarException("Cannot read the pylint report '" + report + "'", e);
+    } finally {
+      IOUtils.closeQuietly(reader);
+    }
+  }
+
+  private static boolean isJson(PushbackReader reader) throws IOException {
+    int c = nextNonWhitespace(reader);
+    if (c != -1) {
+      reader.unread(c);
+    }
+    return c == '[';
+  }
+
+  private static List<Issue> parseText(BufferedReader reader) throws IOException {
+    List<Issue> issues = new LinkedList<Issue>();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      Issue issue = PylintIssuesAnalyzer.parseLine(line);
+      if (issue != null) {
+        issues.add(issue);
+      }
+    }
+    return issues;
+  }
+
+  private static void parseJson(Reader reader, List<Issue> issues) throws IOException {
+    // [{"type": "convention", "module": "m", "obj": "", "line": 1, "column": 0, "path": "m.py",
+    //   "symbol": "missing-docstring", "message": "Missing module docstring", "message-id": "C0111"}, ...]
+    JsonReader json = new JsonReader(reader);
+    try {
+      json.beginArray();
+      while (json.hasNext()) {
+        Issue issue = toIssue(readObject(json));
+        if (issue != null) {
+          issues.add(issue);
+        }
+      }
+      json.endArray();
+    } catch (MalformedJsonException e) {
+      throw new MalformedReportException(e.getMessage(), e);
+    } catch (EOFException e) {
+      throw new MalformedReportException("Unexpected end of the JSON report", e);
+    } catch (IllegalStateException e) {
+      // a value of another type than expected
+      throw new MalformedReportException(e.getMessage(), e);
+    } catch (NumberFormatException e) {
+      // an invalid unicode escape
+      throw new MalformedReportException(e.getMessage(), e);
+    }
+  }
+
+  @CheckForNull
+  private static Issue toIssue(Map<String, String> message) {
+    String messageId = message.get("message-id");
+    String path = message.get("path");
+    String line = message.get("line");
+    if (messageId == null || path == null || line == null) {
+      LOG.debug("Ignoring the incomplete message {}", message);
+      return null;
+    }
+    int lineNumber;
+    try {
+      lineNumber = Integer.parseInt(line);
+    } catch (NumberFormatException e) {
+      LOG.debug("Ignoring the message with an invalid line {}", message);
+      return null;
+    }
+    return new Issue(path, lineNumber, PylintIssuesAnalyzer.ruleId(messageId), message.get("obj"), message.get("message"));
+  }
+
+  /**
+   * Reads the members of an object. Nested values are skipped, the other ones are kept as strings.
+   */
+  private static Map<String, String> readObject(JsonReader json) throws IOException {
+    Map<String, String> members = Maps.newHashMap();
+    json.beginObject();
+    while (json.hasNext()) {
+      String name = json.nextName();
+      JsonToken token = json.peek();
+      if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+        members.put(name, json.nextString());
+      } else if (token == JsonToken.BOOLEAN) {
+        members.put(name, Boolean.toString(json.nextBoolean()));
+      } else {
+        json.skipValue();
+      }
+    }
+    json.endObject();
+    return members;
+  }
+
+  private static int nextNonWhitespace(Reader reader) throws IOException {
+    int c = reader.read();
+    while (c != -1 && Character.isWhitespace(c)) {
+      c = reader.read();
+    }
+    return c;
+  }
+
+  /**
+   * Content which is not valid JSON, as opposed to an error while reading the report.
+   */
+  private static final class MalformedReportException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    MalformedReportException(String message, Throwable cause) {
+      super(message);
+      initCause(cause);
+    }
+
+  }
+
+}
@@ -19,7 +19,13 @@
  */
 package org.sonar.plugins.python.pylint;
 
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.Sensor;
@@ -29,21 +35,43 @@ import org.sonar.api.issue.Issuable;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.scan.filesystem.FileQuery;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
 import org.sonar.api.utils.SonarException;
+import org.sonar.plugins.python.AnalysisCache;
+import org.sonar.plugins.python.Digests;
 import org.sonar.plugins.python.Python;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 public class PylintSensor implements Sensor {
 
   private static final Logger LOG = LoggerFactory.getLogger(PylintSensor.class);
 
+  // outside of the pylint directory, which is cleaned at each analysis
+  private static final String CACHE_FILE = "pylint-cache.bin";
+  private static final String ARCHIVE_FILE = "pylint-output.zip";
+  private static final String DAEMON_SCRIPT = "pylint_daemon.py";
+  private static final String DAEMON_SCRIPT_RESOURCE = "/org/sonar/plugins/python/pylint/" + DAEMON_SCRIPT;
+
   private RuleFinder ruleFinder;
   private RulesProfile profile;
   private PylintConfiguration conf;
@@ -65,36 +93,214 @@ public class PylintSensor implements Sensor {
   }
 
   public void analyse(Project project, SensorContext sensorContext) {
+    if (conf.isReportImport()) {
+      importReports(project);
+      return;
+    }
+
     File workdir = new File(fileSystem.workingDir(), "/pylint/");
     prepareWorkDir(workdir);
-    int i = 0;
-    for (File file : fileSystem.files(FileQuery.onSource().onLanguage(Python.KEY))) {
-      try {
-        File out = new File(workdir, i + ".out");
-        analyzeFile(file, out, project, sensorContext);
-        i++;
-      } catch (Exception e) {
-        String msg = new StringBuilder()
-            .append("Cannot analyse the file '")
-            .append(file.getAbsolutePath())
-            .append("', details: '")
-            .append(e)
-            .append("'")
-            .toString();
-        throw new SonarException(msg, e);
+    // the pylint version is detected only once per analysis
+    PylintIssuesAnalyzer analyzer = createAnalyzer();
+    List<File> files = fileSystem.files(FileQuery.onSource().onLanguage(Python.KEY));
+    AnalysisCache<List<Issue>> cache = conf.isCacheEnabled() ? AnalysisCache.<List<Issue>>load(new File(fileSystem.workingDir(), CACHE_FILE), fingerprint(analyzer)) : null;
+
+    Map<File, List<Issue>> issuesByFile = Maps.newHashMap();
+    Map<File, String> contentHashes = Maps.newHashMap();
+    List<File> filesToAnalyze = Lists.newArrayList();
+    for (File file : files) {
+      List<Issue> cachedIssues = null;
+      if (cache != null) {
+        String contentHash = contentHash(file);
+        if (contentHash != null) {
+          contentHashes.put(file, contentHash);
+          cachedIssues = cache.get(file.getAbsolutePath(), contentHash);
+        }
+      }
+      if (cachedIssues == null) {
+        filesToAnalyze.add(file);
+      } else {
+        issuesByFile.put(file, cachedIssues);
+      }
+    }
+    if (cache != null) {
+      LOG.info("Pylint issues of {} file(s) taken from the cache, {} file(s) to analyse", issuesByFile.size(), filesToAnalyze.size());
+    }
+
+    List<List<File>> batches = Lists.partition(filesToAnalyze, conf.getBatchSize());
+    int threads = Math.max(1, Math.min(conf.getThreads(), batches.size()));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    PylintOutputArchive archive = conf.isOutputArchived() ? new PylintOutputArchive(new File(workdir, ARCHIVE_FILE), fileSystem.sourceCharset()) : null;
+    BlockingQueue<PylintDaemon> daemons = conf.isDaemon() && !batches.isEmpty() ? createDaemons(analyzer, workdir, threads) : null;
+    try {
+      List<Future<Map<File, List<Issue>>>> futures = Lists.newArrayList();
+      for (int i = 0; i < batches.size(); i++) {
+        futures.add(executor.submit(new Batch(analyzer, daemons, batches.get(i), archive, i + ".out")));
+      }
+      for (int i = 0; i < batches.size(); i++) {
+        issuesByFile.putAll(waitFor(futures.get(i), batches.get(i)));
+      }
+    } finally {
+      executor.shutdownNow();
+      if (archive != null) {
+        archive.close();
+      }
+      if (daemons != null) {
+        for (PylintDaemon daemon : daemons) {
+          daemon.close();
+        }
       }
     }
+
+    // issues are saved in the order of the files, whatever the order in which the pylint processes complete
+    for (File file : files) {
+      List<Issue> issues = issuesByFile.get(file);
+      if (issues == null) {
+        continue;
+      }
+      saveIssues(org.sonar.api.resources.File.fromIOFile(file, project), issues);
+      if (cache != null && contentHashes.containsKey(file)) {
+        cache.put(file.getAbsolutePath(), contentHashes.get(file), Lists.newArrayList(issues));
+      }
+    }
+    if (cache != null) {
+      cache.save();
+    }
   }
 
-  protected void analyzeFile(File file, File out, Project project, SensorContext sensorContext) throws IOException {
-    org.sonar.api.resources.File pyfile = org.sonar.api.resources.File.fromIOFile(file, project);
+  /**
+   * Saves the issues of reports produced outside of Sonar, pylint is not run at all.
+   */
+  private void importReports(Project project) {
+    List<File> files = fileSystem.files(FileQuery.onSource().onLanguage(Python.KEY));
+    Map<File, List<Issue>> issuesByFile = Maps.newHashMap();
+    for (File report : conf.getReports(fileSystem)) {
+      LOG.info("Processing pylint report '{}'", report);
+      List<Issue> issues = PylintReportParser.parse(report, fileSystem.sourceCharset());
+      for (Map.Entry<File, List<Issue>> entry : issuesByFile(files, issues, fileSystem.baseDir()).entrySet()) {
+        if (issuesByFile.containsKey(entry.getKey())) {
+          issuesByFile.get(entry.getKey()).addAll(entry.getValue());
+        } else {
+          issuesByFile.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
 
-    String pylintConfigPath = conf.getPylintConfigPath(fileSystem);
+    for (File file : files) {
+      List<Issue> issues = issuesByFile.get(file);
+      if (issues != null) {
+        saveIssues(org.sonar.api.resources.File.fromIOFile(file, project), issues);
+      }
+    }
+  }
+
+  private PylintIssuesAnalyzer createAnalyzer() {
     String pylintPath = conf.getPylintPath();
+    List<String> enabledRuleIds = Lists.newArrayList();
+    for (ActiveRule activeRule : profile.getActiveRulesByRepository(PylintRuleRepository.REPOSITORY_KEY)) {
+      enabledRuleIds.add(activeRule.getRuleKey());
+    }
+    PylintArguments arguments = PylintIssuesAnalyzer.arguments(pylintPath);
+    boolean activeRulesOnly = conf.isActiveRulesOnly() && !enabledRuleIds.isEmpty();
+    return new PylintIssuesAnalyzer(pylintPath, conf.getPylintConfigPath(fileSystem), arguments, activeRulesOnly ? enabledRuleIds : null);
+  }
+
+  private static String fingerprint(PylintIssuesAnalyzer analyzer) {
+    try {
+      return analyzer.fingerprint();
+    } catch (IOException e) {
+      throw new SonarException("Cannot read the pylint configuration file", e);
+    }
+  }
+
+  @CheckForNull
+  private static String contentHash(File file) {
+    try {
+      return Digests.sha1Hex(file);
+    } catch (IOException e) {
+      LOG.warn("Cannot read the file '" + file + "', it is not taken from the pylint cache", e);
+      return null;
+    }
+  }
+
+  private static PylintDaemon takeDaemon(BlockingQueue<PylintDaemon> daemons) {
+    try {
+      return daemons.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Interrupted while waiting for a pylint daemon", e);
+    }
+  }
+
+  private static Map<File, List<Issue>> waitFor(Future<Map<File, List<Issue>>> future, List<File> batch) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Interrupted while running pylint", e);
+    } catch (ExecutionException e) {
+      String msg = new StringBuilder()
+          .append("Cannot analyse the file(s) '")
+          .append(Joiner.on("', '").join(batch))
+          .append("', details: '")
+          .append(e.getCause())
+          .append("'")
+          .toString();
+      throw new SonarException(msg, e.getCause());
+    }
+  }
 
-    PylintIssuesAnalyzer analyzer = new PylintIssuesAnalyzer(pylintPath, pylintConfigPath);
-    List<Issue> issues = analyzer.analyze(file.getAbsolutePath(), fileSystem.sourceCharset(), out);
+  /**
+   * One daemon per worker thread: a worker takes a daemon from the queue for each batch, and gives it back afterwards.
+   */
+  private BlockingQueue<PylintDaemon> createDaemons(PylintIssuesAnalyzer analyzer, File workdir, int count) {
+    File script = new File(workdir, DAEMON_SCRIPT);
+    try {
+      Files.write(Resources.toByteArray(PylintSensor.class.getResource(DAEMON_SCRIPT_RESOURCE)), script);
+    } catch (IOException e) {
+      throw new SonarException("Cannot extract the pylint daemon script to " + script, e);
+    }
+
+    List<String> command = Lists.newArrayList(conf.getPythonPath(), script.getAbsolutePath(), PylintDaemon.END_MARKER);
+    command.addAll(analyzer.commandArguments());
+    BlockingQueue<PylintDaemon> daemons = new LinkedBlockingQueue<PylintDaemon>();
+    for (int i = 0; i < count; i++) {
+      daemons.add(new PylintDaemon(command));
+    }
+    return daemons;
+  }
+
+  protected Map<File, List<Issue>> analyzeFiles(PylintIssuesAnalyzer analyzer, @Nullable BlockingQueue<PylintDaemon> daemons, List<File> files,
+    @Nullable List<String> rawOutput) {
+    List<String> paths = Lists.newArrayList();
+    for (File file : files) {
+      paths.add(file.getAbsolutePath());
+    }
+
+    List<Issue> issues;
+    if (daemons == null) {
+      issues = analyzer.analyze(paths, conf.getTimeout(), rawOutput);
+    } else {
+      PylintDaemon daemon = takeDaemon(daemons);
+      try {
+        issues = daemon.analyze(paths, conf.getTimeout(), rawOutput);
+      } finally {
+        daemons.add(daemon);
+      }
+      if (issues == null) {
+        // skipped after a timeout, neither saved nor cached
+        return Collections.emptyMap();
+      }
+    }
+    if (files.size() == 1) {
+      Map<File, List<Issue>> issuesByFile = Maps.newHashMap();
+      issuesByFile.put(files.get(0), issues);
+      return issuesByFile;
+    }
+    return issuesByFile(files, issues, null);
+  }
 
+  private void saveIssues(org.sonar.api.resources.File pyfile, List<Issue> issues) {
     for (Issue pylintIssue : issues) {
       Rule rule = ruleFinder.findByKey(PylintRuleRepository.REPOSITORY_KEY, pylintIssue.getRuleId());
 
@@ -119,6 +325,38 @@ public class PylintSensor implements Sensor {
     }
   }
 
+  /**
+   * Splits the issues of one pylint invocation or report by analysed file. Pylint reports the path of a file either as it was given
+   * or relative to its working directory, depending on its version, so both forms are resolved, relative to the given
+   * base directory as well if any, and a suffix match is the last resort.
+   */
+  static Map<File, List<Issue>> issuesByFile(List<File> files, List<Issue> issues, @Nullable File baseDir) {
+    Map<File, List<Issue>> issuesByFile = Maps.newLinkedHashMap();
+    for (File file : files) {
+      issuesByFile.put(file, new LinkedList<Issue>());
+    }
+    FileIndex index = new FileIndex(files);
+
+    int ignoredIssues = 0;
+    for (Issue issue : issues) {
+      File file = index.find(issue.getFilename(), baseDir);
+      if (file == null) {
+        LOG.debug("Cannot find the file '{}' reported by pylint, ignoring the issue {}", issue.getFilename(), issue);
+        ignoredIssues++;
+      } else {
+        issuesByFile.get(file).add(issue);
+      }
+    }
+    if (ignoredIssues > 0) {
+      LOG.warn("{} pylint issue(s) ignored because their file is not a source file of the project", ignoredIssues);
+    }
+    return issuesByFile;
+  }
+
+  private static String normalizedPath(File file) {
+    return FilenameUtils.separatorsToUnix(FilenameUtils.normalize(file.getAbsolutePath()));
+  }
+
   private static void prepareWorkDir(File dir) {
     try {
       FileUtils.forceMkdir(dir);
@@ -129,4 +367,86 @@ public class PylintSensor implements Sensor {
     }
   }
 
+  /**
+   * Finds the files reported by pylint by their path, and by the end of their path when the reported path is relative.
+   * The index of the path ends is built on first use, and a path end shared by several files is given to the first one.
+   */
+  private static final class FileIndex {
+
+    private final List<File> files;
+    private final Map<String, File> filesByPath = Maps.newHashMap();
+    private Map<String, File> filesBySuffix;
+
+    FileIndex(List<File> files) {
+      this.files = files;
+      for (File file : files) {
+        filesByPath.put(normalizedPath(file), file);
+      }
+    }
+
+    @CheckForNull
+    File find(@Nullable String filename, @Nullable File baseDir) {
+      if (filename == null) {
+        return null;
+      }
+      File reportedFile = new File(filename);
+      File file = filesByPath.get(normalizedPath(reportedFile));
+      if (file == null && baseDir != null && !reportedFile.isAbsolute()) {
+        file = filesByPath.get(normalizedPath(new File(baseDir, filename)));
+      }
+      if (file == null && !reportedFile.isAbsolute()) {
+        file = filesBySuffix().get("/" + FilenameUtils.separatorsToUnix(FilenameUtils.normalize(filename)));
+      }
+      return file;
+    }
+
+    private Map<String, File> filesBySuffix() {
+      if (filesBySuffix == null) {
+        filesBySuffix = Maps.newHashMap();
+        for (File file : files) {
+          String path = normalizedPath(file);
+          for (int i = path.indexOf('/'); i >= 0; i = path.indexOf('/', i + 1)) {
+            String suffix = path.substring(i);
+            if (!filesBySuffix.containsKey(suffix)) {
+              filesBySuffix.put(suffix, file);
+            }
+          }
+        }
+      }
+      return filesBySuffix;
+    }
+
+  }
+
+  /**
+   * One pylint process, run by the worker pool of {@link #analyse(Project, SensorContext)}.
+   */
+  private final class Batch implements Callable<Map<File, List<Issue>>> {
+
+    private final PylintIssuesAnalyzer analyzer;
+    private final BlockingQueue<PylintDaemon> daemons;
+    private final List<File> files;
+    private final PylintOutputArchive archive;
+    private final String name;
+
+    Batch(PylintIssuesAnalyzer analyzer, @Nullable BlockingQueue<PylintDaemon> daemons, List<File> files, @Nullable PylintOutputArchive archive, String name) {
+      this.analyzer = analyzer;
+      this.daemons = daemons;
+      this.files = files;
+      this.archive = archive;
+      this.name = name;
+    }
+
+    public Map<File, List<Issue>> call() {
+      if (archive == null) {
+        return analyzeFiles(analyzer, daemons, files, null);
+      }
+      List<String> rawOutput = Lists.newArrayList();
+      Map<File, List<Issue>> issues = analyzeFiles(analyzer, daemons, files, rawOutput);
+      archive.add(name, rawOutput);
+      return issues;
+    }
+
+  }
+
 }
@@ -0,0 +1,88 @@
+# Sonar Python Plugin
+# Copyright (C) 2011 Waleri Enns
+# Author(s) : Waleri Enns
+# waleri.enns@gmail.com
+
+# This program is free software; you can redistribute it and/or
+# modify it under the terms of the GNU Lesser General Public
+# License as published by the Free Software Foundation; either
+# version 3 of the License, or (at your option) any later version.
+
+# This program is distributed in the hope that it will be useful,
+# but WITHOUT ANY WARRANTY; without even the implied warranty of
+# MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+# Lesser General Public License for more details.
+
+# You should have received a copy of the GNU Lesser General Public
+# License along with this program; if not, write to the Free Software
+# Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+
+
+
+#
+# Runs pylint on the files received on the stdin, without starting a new
+# interpreter for each of them. Usage:
+#
+#   python pylint_daemon.py <end marker> <pylint arguments>...
+#
+# Each line of the stdin is a tab-separated list of files to analyse. The
+# messages of pylint are written to the stdout, followed by a line holding
+# only the end marker once the files have been analysed. When pylint fails on
+# the files of a line, the traceback is written to the stderr, and a line made
+# of the end marker, ":error:" and the error is written before the end marker:
+# the daemon goes on with the next line.
+#
+# The modules parsed by pylint stay in the cache of the astroid manager, which
+# is emptied after each line so that the memory does not grow with the number
+# of files analysed.
+#
+
+import sys
+import traceback
+
+from pylint import lint
+
+try:
+    from astroid import MANAGER
+except ImportError:
+    try:
+        # pylint < 1.0
+        from logilab.astng import MANAGER
+    except ImportError:
+        MANAGER = None
+
+
+def clear_cache():
+    if MANAGER is None:
+        return
+    for name in ('astroid_cache', 'astng_cache', '_mod_file_cache'):
+        cache = getattr(MANAGER, name, None)
+        if cache is not None:
+            cache.clear()
+
+
+def main():
+    end_marker = sys.argv[1]
+    arguments = sys.argv[2:]
+    while True:
+        line = sys.stdin.readline()
+        if not line:
+            break
+        paths = [path for path in line.rstrip('\r\n').split('\t') if path]
+        try:
+            lint.Run(arguments + paths)
+        except SystemExit:
+            # pylint exits with a status telling which kinds of messages were issued
+            pass
+        except Exception as e:
+            traceback.print_exc()
+            sys.stderr.flush()
+            error = ('%s: %s' % (type(e).__name__, e)).replace('\r', ' ').replace('\n', ' ')
+            sys.stdout.write(end_marker + ':error:' + error + '\n')
+        clear_cache()
+        sys.stdout.write(end_marker + '\n')
+        sys.stdout.flush()
+
+
+if __name__ == '__main__':
+    main()
@@ -0,0 +1,72 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.python;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.python.api.PythonMetric;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AnalysisCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_reuse_entries_of_unchanged_files() throws Exception {
+    File file = new File(temp.newFolder(), "cache.bin");
+    SquidFileResult result = new SquidFileResult();
+    result.setMeasure(PythonMetric.LINES, 42);
+    result.addMessage("python", "LineLength", 3, "Line too long");
+
+    AnalysisCache<SquidFileResult> cache = AnalysisCache.load(file, "fingerprint");
+    assertThat(cache.get("a.py", "hash")).isNull();
+    cache.put("a.py", "hash", result);
+    cache.save();
+
+    cache = AnalysisCache.load(file, "fingerprint");
+    assertThat(cache.get("a.py", "other hash")).isNull();
+    SquidFileResult cachedResult = cache.get("a.py", "hash");
+    assertThat(cachedResult.getMeasure(PythonMetric.LINES)).isEqualTo(42.0);
+    assertThat(cachedResult.getMessages()).hasSize(1);
+    assertThat(cachedResult.getMessages().get(0).getLine()).isEqualTo(3);
+  }
+
+  @Test
+  public void should_drop_entries_when_fingerprint_changes() throws Exception {
+    File file = new File(temp.newFolder(), "cache.bin");
+    AnalysisCache<SquidFileResult> cache = AnalysisCache.load(file, "fingerprint");
+    cache.put("a.py", "hash", new SquidFileResult());
+    cache.save();
+
+    assertThat(AnalysisCache.<SquidFileResult>load(file, "other fingerprint").get("a.py", "hash")).isNull();
+  }
+
+  @Test
+  public void should_ignore_corrupted_cache() throws Exception {
+    File file = temp.newFile("cache.bin");
+    assertThat(AnalysisCache.<SquidFileResult>load(file, "fingerprint").get("a.py", "hash")).isNull();
+  }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.python;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DigestsTest {
+
+  @Test
+  public void should_identify_build_of_code() {
+    String fingerprint = Digests.codeFingerprint(Digests.class);
+    assertThat(Digests.codeFingerprint(Digests.class)).isEqualTo(fingerprint);
+    assertThat(Digests.codeFingerprint(Digests.class, Test.class)).isNotEqualTo(fingerprint);
+  }
+
+  @Test
+  public void should_not_reuse_fingerprint_of_unknown_code() {
+    // classes of the JDK have no code source
+    assertThat(Digests.codeFingerprint(String.class)).isNotEqualTo(Digests.codeFingerprint(String.class));
+  }
+
+  @Test
+  public void sha1Hex() {
+    assertThat(Digests.sha1Hex("abc")).isEqualTo("a9993e364706816aba3e25717850c26c9cd0d89d");
+  }
+
+}
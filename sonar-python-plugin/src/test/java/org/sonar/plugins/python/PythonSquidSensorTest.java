@@ -19,20 +19,32 @@
  */
 package org.sonar.plugins.python;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
 import org.apache.commons.collections.ListUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.issue.Issue;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.measures.Measure;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.*;
 import org.sonar.api.scan.filesystem.FileQuery;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.python.checks.CheckList;
 
 import java.io.File;
 import java.nio.charset.Charset;
@@ -41,11 +53,16 @@ import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class PythonSquidSensorTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private FileLinesContextFactory fileLinesContextFactory;
 
   @Before
@@ -59,7 +76,7 @@ public class PythonSquidSensorTest {
   public void should_execute_on_python_project() {
     Project project = mock(Project.class);
     ModuleFileSystem fs = mock(ModuleFileSystem.class);
-    PythonSquidSensor sensor = new PythonSquidSensor(mock(RulesProfile.class), fileLinesContextFactory, fs, mock(ResourcePerspectives.class));
+    PythonSquidSensor sensor = new PythonSquidSensor(mock(RulesProfile.class), fileLinesContextFactory, fs, mock(ResourcePerspectives.class), new Settings());
 
     when(fs.files(any(FileQuery.class))).thenReturn(ListUtils.EMPTY_LIST);
     assertThat(sensor.shouldExecuteOnProject(project)).isFalse();
@@ -81,7 +98,7 @@ public class PythonSquidSensorTest {
     Project project = new Project("key");
     project.setFileSystem(pfs);
     SensorContext context = mock(SensorContext.class);
-    PythonSquidSensor sensor = new PythonSquidSensor(mock(RulesProfile.class), fileLinesContextFactory, fs, mock(ResourcePerspectives.class));
+    PythonSquidSensor sensor = new PythonSquidSensor(mock(RulesProfile.class), fileLinesContextFactory, fs, mock(ResourcePerspectives.class), new Settings());
 
     sensor.analyse(project, context);
 
@@ -93,11 +110,190 @@ public class PythonSquidSensorTest {
     verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.CLASSES), Mockito.eq(1.0));
     verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.COMPLEXITY), Mockito.eq(4.0));
     verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.COMMENT_LINES), Mockito.eq(9.0));
+
+    ArgumentCaptor<Measure> distributions = ArgumentCaptor.forClass(Measure.class);
+    verify(context, times(2)).saveMeasure(Mockito.any(Resource.class), distributions.capture());
+    Measure functionsDistribution = distributions.getAllValues().get(1);
+    assertThat(functionsDistribution.getMetric()).isEqualTo(CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION);
+    assertThat(functionsDistribution.getData()).isEqualTo("1=4;2=0;4=0;6=0;8=0;10=0;12=0;20=0;30=0");
+  }
+
+  @Test
+  public void should_analyse_in_parallel() {
+    ModuleFileSystem fs = mock(ModuleFileSystem.class);
+    when(fs.sourceCharset()).thenReturn(Charset.forName("UTF-8"));
+    when(fs.files(any(FileQuery.class))).thenReturn(ImmutableList.of(
+      new File("src/test/resources/org/sonar/plugins/python/code_chunks_2.py"),
+      new File("src/test/resources/org/sonar/plugins/python/smoketest_project_1/src/prod.py"),
+      new File("src/test/resources/org/sonar/plugins/python/smoketest_project_1/src/prod_uncovered.py")));
+
+    ProjectFileSystem pfs = mock(ProjectFileSystem.class);
+    when(pfs.getSourceDirs()).thenReturn(ImmutableList.of(new File("src/test/resources/org/sonar/plugins/python/")));
+
+    Project project = new Project("key");
+    project.setFileSystem(pfs);
+    SensorContext context = mock(SensorContext.class);
+    Settings settings = new Settings();
+    settings.setProperty(PythonSquidSensor.THREADS_KEY, "2");
+    PythonSquidSensor sensor = new PythonSquidSensor(mock(RulesProfile.class), fileLinesContextFactory, fs, mock(ResourcePerspectives.class), settings);
+
+    sensor.analyse(project, context);
+
+    verify(context, times(3)).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.FILES), Mockito.eq(1.0));
+    verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.LINES), Mockito.eq(29.0));
+  }
+
+  @Test
+  public void should_save_each_file_while_scanning() {
+    ModuleFileSystem fs = mock(ModuleFileSystem.class);
+    when(fs.sourceCharset()).thenReturn(Charset.forName("UTF-8"));
+    when(fs.files(any(FileQuery.class))).thenReturn(ImmutableList.of(
+      new File("src/test/resources/org/sonar/plugins/python/code_chunks_2.py"),
+      new File("src/test/resources/org/sonar/plugins/python/smoketest_project_1/src/prod.py"),
+      new File("src/test/resources/org/sonar/plugins/python/smoketest_project_1/src/prod_uncovered.py")));
+
+    ProjectFileSystem pfs = mock(ProjectFileSystem.class);
+    when(pfs.getSourceDirs()).thenReturn(ImmutableList.of(new File("src/test/resources/org/sonar/plugins/python/")));
+
+    Project project = new Project("key");
+    project.setFileSystem(pfs);
+    SensorContext context = mock(SensorContext.class);
+    Settings settings = new Settings();
+    settings.setProperty(PythonSquidSensor.STREAMING_KEY, "true");
+    settings.setProperty(PythonSquidSensor.THREADS_KEY, "2");
+    PythonSquidSensor sensor = new PythonSquidSensor(mock(RulesProfile.class), fileLinesContextFactory, fs, mock(ResourcePerspectives.class), settings);
+
+    sensor.analyse(project, context);
+
+    verify(context, times(3)).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.FILES), Mockito.eq(1.0));
+    verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.LINES), Mockito.eq(29.0));
+    verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.FUNCTIONS), Mockito.eq(4.0));
+    verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.COMPLEXITY), Mockito.eq(4.0));
+  }
+
+  @Test
+  public void should_run_checks_once_per_file_while_streaming() {
+    ModuleFileSystem fs = mock(ModuleFileSystem.class);
+    when(fs.sourceCharset()).thenReturn(Charset.forName("UTF-8"));
+    when(fs.files(any(FileQuery.class))).thenReturn(ImmutableList.of(
+      new File("src/test/resources/org/sonar/plugins/python/streaming/first.py"),
+      new File("src/test/resources/org/sonar/plugins/python/streaming/second.py"),
+      new File("src/test/resources/org/sonar/plugins/python/streaming/third.py")));
+
+    ProjectFileSystem pfs = mock(ProjectFileSystem.class);
+    when(pfs.getSourceDirs()).thenReturn(ImmutableList.of(new File("src/test/resources/org/sonar/plugins/python/")));
+
+    Project project = new Project("key");
+    project.setFileSystem(pfs);
+    RulesProfile profile = RulesProfile.create();
+    profile.activateRule(org.sonar.api.rules.Rule.create(CheckList.REPOSITORY_KEY, "InequalityUsage", "InequalityUsage"), null);
+    Issuable issuable = mockIssuable();
+    ResourcePerspectives perspectives = mock(ResourcePerspectives.class);
+    when(perspectives.as(Mockito.eq(Issuable.class), Mockito.any(Resource.class))).thenReturn(issuable);
+    Settings settings = new Settings();
+    settings.setProperty(PythonSquidSensor.STREAMING_KEY, "true");
+
+    new PythonSquidSensor(profile, fileLinesContextFactory, fs, perspectives, settings).analyse(project, mock(SensorContext.class));
+
+    verify(issuable, times(4)).addIssue(Mockito.any(Issue.class));
+  }
+
+  private static Issuable mockIssuable() {
+    final Issuable.IssueBuilder issueBuilder = mock(Issuable.IssueBuilder.class, new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) {
+        return invocation.getMethod().getReturnType().isInstance(invocation.getMock()) ? invocation.getMock() : null;
+      }
+    });
+    Issuable issuable = mock(Issuable.class);
+    when(issuable.newIssueBuilder()).thenReturn(issueBuilder);
+    return issuable;
+  }
+
+  @Test
+  public void should_only_lex() {
+    ModuleFileSystem fs = mock(ModuleFileSystem.class);
+    when(fs.sourceCharset()).thenReturn(Charset.forName("UTF-8"));
+    when(fs.files(any(FileQuery.class))).thenReturn(ImmutableList.of(
+      new File("src/test/resources/org/sonar/plugins/python/code_chunks_2.py")));
+
+    ProjectFileSystem pfs = mock(ProjectFileSystem.class);
+    when(pfs.getSourceDirs()).thenReturn(ImmutableList.of(new File("src/test/resources/org/sonar/plugins/python/")));
+
+    Project project = new Project("key");
+    project.setFileSystem(pfs);
+    SensorContext context = mock(SensorContext.class);
+    Settings settings = new Settings();
+    settings.setProperty(PythonSquidSensor.TOKENS_ONLY_KEY, "true");
+    PythonSquidSensor sensor = new PythonSquidSensor(mock(RulesProfile.class), fileLinesContextFactory, fs, mock(ResourcePerspectives.class), settings);
+
+    sensor.analyse(project, context);
+
+    verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.LINES), Mockito.eq(29.0));
+    verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.NCLOC), Mockito.eq(25.0));
+    verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.COMMENT_LINES), Mockito.eq(9.0));
+    verify(context, never()).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.FUNCTIONS), Mockito.anyDouble());
+    verify(context, never()).saveMeasure(Mockito.any(Resource.class), Mockito.any(Measure.class));
+  }
+
+  @Test
+  public void should_reuse_results_of_unchanged_files() throws Exception {
+    ModuleFileSystem fs = mock(ModuleFileSystem.class);
+    when(fs.sourceCharset()).thenReturn(Charset.forName("UTF-8"));
+    when(fs.workingDir()).thenReturn(temp.newFolder());
+    when(fs.files(any(FileQuery.class))).thenReturn(ImmutableList.of(
+      new File("src/test/resources/org/sonar/plugins/python/code_chunks_2.py")));
+
+    ProjectFileSystem pfs = mock(ProjectFileSystem.class);
+    when(pfs.getSourceDirs()).thenReturn(ImmutableList.of(new File("src/test/resources/org/sonar/plugins/python/")));
+
+    Project project = new Project("key");
+    project.setFileSystem(pfs);
+    Settings settings = new Settings();
+    settings.setProperty(PythonSquidSensor.CACHE_KEY, "true");
+
+    new PythonSquidSensor(mock(RulesProfile.class), fileLinesContextFactory, fs, mock(ResourcePerspectives.class), settings).analyse(project, mock(SensorContext.class));
+    assertThat(new File(fs.workingDir(), "python-squid-cache.bin")).exists();
+
+    FileLinesContext fileLinesContext = mock(FileLinesContext.class);
+    FileLinesContextFactory secondFileLinesContextFactory = mock(FileLinesContextFactory.class);
+    when(secondFileLinesContextFactory.createFor(Mockito.any(Resource.class))).thenReturn(fileLinesContext);
+    SensorContext context = mock(SensorContext.class);
+    new PythonSquidSensor(mock(RulesProfile.class), secondFileLinesContextFactory, fs, mock(ResourcePerspectives.class), settings).analyse(project, context);
+
+    verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.LINES), Mockito.eq(29.0));
+    verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.NCLOC), Mockito.eq(25.0));
+    verify(context).saveMeasure(Mockito.any(Resource.class), Mockito.eq(CoreMetrics.COMMENT_LINES), Mockito.eq(9.0));
+    verify(fileLinesContext, times(29)).setIntValue(Mockito.eq(CoreMetrics.NCLOC_DATA_KEY), Mockito.anyInt(), Mockito.anyInt());
+    verify(fileLinesContext).save();
+  }
+
+  @Test
+  public void should_write_parse_profile() throws Exception {
+    ModuleFileSystem fs = mock(ModuleFileSystem.class);
+    when(fs.sourceCharset()).thenReturn(Charset.forName("UTF-8"));
+    when(fs.workingDir()).thenReturn(temp.newFolder());
+    when(fs.files(any(FileQuery.class))).thenReturn(ImmutableList.of(
+      new File("src/test/resources/org/sonar/plugins/python/code_chunks_2.py")));
+
+    ProjectFileSystem pfs = mock(ProjectFileSystem.class);
+    when(pfs.getSourceDirs()).thenReturn(ImmutableList.of(new File("src/test/resources/org/sonar/plugins/python/")));
+
+    Project project = new Project("key");
+    project.setFileSystem(pfs);
+    Settings settings = new Settings();
+    settings.setProperty(PythonSquidSensor.PROFILE_PARSER_KEY, "true");
+
+    new PythonSquidSensor(mock(RulesProfile.class), fileLinesContextFactory, fs, mock(ResourcePerspectives.class), settings).analyse(project, mock(SensorContext.class));
+
+    String report = Files.toString(new File(fs.workingDir(), PythonSquidSensor.PROFILE_FILE), Charsets.UTF_8);
+    assertThat(report).startsWith("Parse profile of 1 files");
+    assertThat(report).contains("code_chunks_2.py");
+    assertThat(report).contains("FILE_INPUT");
   }
 
   @Test
   public void test_toString() {
-    PythonSquidSensor sensor = new PythonSquidSensor(mock(RulesProfile.class), fileLinesContextFactory, null, mock(ResourcePerspectives.class));
+    PythonSquidSensor sensor = new PythonSquidSensor(mock(RulesProfile.class), fileLinesContextFactory, null, mock(ResourcePerspectives.class), new Settings());
     assertThat(sensor.toString()).isEqualTo("PythonSquidSensor");
   }
 
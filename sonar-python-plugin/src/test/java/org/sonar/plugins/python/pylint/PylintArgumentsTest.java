@@ -19,14 +19,26 @@
  */
 package org.sonar.plugins.python.pylint;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
 import org.apache.commons.lang.SystemUtils;
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.command.Command;
 
+import java.io.File;
+import java.util.Map;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class PylintArgumentsTest {
 
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
   @Test
   public void pylint_0_x() {
     String[] arguments = new PylintArguments(command("pylint 0.28.0")).arguments();
@@ -45,6 +57,72 @@ public class PylintArgumentsTest {
     assertThat(arguments).containsOnly("--msg-template", "{path}:{line}: [{msg_id}({symbol}), {obj}] {msg}", "-r", "n");
   }
 
+  @Test
+  public void version() {
+    assertThat(new PylintArguments(command("pylint 1.1.0")).version()).isEqualTo("1.1.0");
+  }
+
+  @Test
+  public void is_older_than() {
+    PylintArguments arguments = new PylintArguments(command("pylint 0.23.0"));
+    assertThat(arguments.isOlderThan(0, 24)).isTrue();
+    assertThat(arguments.isOlderThan(0, 23)).isFalse();
+    assertThat(new PylintArguments(command("pylint 1.1.0")).isOlderThan(0, 24)).isFalse();
+  }
+
+  @Test
+  public void should_detect_version_once_per_executable() throws Exception {
+    Assume.assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+    File executable = tempFolder.newFile("pylint");
+    Files.write("#!/bin/sh\necho pylint 1.1.0\n", executable, Charsets.UTF_8);
+    executable.setExecutable(true);
+
+    PylintArguments arguments = PylintArguments.forExecutable(executable.getAbsolutePath());
+    assertThat(PylintArguments.forExecutable(executable.getAbsolutePath())).isSameAs(arguments);
+
+    Files.write("#!/bin/sh\necho pylint 0.28.0\n", executable, Charsets.UTF_8);
+    executable.setLastModified(executable.lastModified() + 10000);
+    assertThat(PylintArguments.forExecutable(executable.getAbsolutePath()).version()).isEqualTo("0.28.0");
+  }
+
+  @Test
+  public void should_parse_message_ids_by_symbol() {
+    Map<String, String> ids = PylintArguments.parseMessageIdsBySymbol(ImmutableList.of(
+      ":unused-import (W0611): *Unused import %s*",
+      "  Used when an imported module or variable is not used. This message belongs to",
+      "  the variables checker.",
+      ":logging-not-lazy (W1201): *Specify string format arguments as logging function parameters*",
+      ":W0612: *Unused variable %r*"));
+    assertThat(ids).hasSize(2);
+    assertThat(ids.get("unused-import")).isEqualTo("W0611");
+    assertThat(ids.get("logging-not-lazy")).isEqualTo("W1201");
+  }
+
+  @Test
+  public void should_list_message_ids_by_symbol_once() throws Exception {
+    Assume.assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+    File executable = tempFolder.newFile("pylint");
+    File calls = tempFolder.newFile("calls");
+    Files.write("#!/bin/sh\n"
+      + "if [ \"$1\" = \"--list-msgs\" ]; then\n"
+      + "  echo list >> " + calls.getAbsolutePath() + "\n"
+      + "  echo ':unused-import (W0611): *Unused import %s*'\n"
+      + "else\n"
+      + "  echo pylint 1.1.0\n"
+      + "fi\n", executable, Charsets.UTF_8);
+    executable.setExecutable(true);
+
+    PylintArguments arguments = new PylintArguments(Command.create(executable.getAbsolutePath()).addArgument("--version"));
+    assertThat(arguments.messageIdsBySymbol()).hasSize(1);
+    assertThat(arguments.messageIdsBySymbol().get("unused-import")).isEqualTo("W0611");
+    assertThat(Files.readLines(calls, Charsets.UTF_8)).hasSize(1);
+  }
+
+  @Test
+  public void should_not_fail_when_messages_cannot_be_listed() {
+    assertThat(new PylintArguments(command("pylint 1.1.0")).messageIdsBySymbol()).isEmpty();
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void unknown() throws Exception {
     new PylintArguments(command(""));
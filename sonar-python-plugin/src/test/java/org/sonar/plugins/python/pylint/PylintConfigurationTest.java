@@ -66,4 +66,47 @@ public class PylintConfigurationTest {
 
     assertThat(pylintConfiguration.getPylintPath()).isEqualTo(path);
   }
+
+  @Test
+  public void getBatchSize() {
+    assertThat(pylintConfiguration.getBatchSize()).isEqualTo(1);
+
+    settings.setProperty(PylintConfiguration.PYLINT_BATCH_SIZE_KEY, "20");
+    assertThat(pylintConfiguration.getBatchSize()).isEqualTo(20);
+
+    settings.setProperty(PylintConfiguration.PYLINT_BATCH_SIZE_KEY, "0");
+    assertThat(pylintConfiguration.getBatchSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void getThreads() {
+    assertThat(pylintConfiguration.getThreads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+
+    settings.setProperty(PylintConfiguration.PYLINT_THREADS_KEY, "3");
+    assertThat(pylintConfiguration.getThreads()).isEqualTo(3);
+  }
+
+  @Test
+  public void getTimeout() {
+    assertThat(pylintConfiguration.getTimeout()).isEqualTo(300000L);
+
+    settings.setProperty(PylintConfiguration.PYLINT_TIMEOUT_KEY, "60");
+    assertThat(pylintConfiguration.getTimeout()).isEqualTo(60000L);
+  }
+
+  @Test
+  public void isActiveRulesOnly() {
+    assertThat(pylintConfiguration.isActiveRulesOnly()).isTrue();
+
+    settings.setProperty(PylintConfiguration.PYLINT_ACTIVE_RULES_ONLY_KEY, "false");
+    assertThat(pylintConfiguration.isActiveRulesOnly()).isFalse();
+  }
+
+  @Test
+  public void getPythonPath() {
+    assertThat(pylintConfiguration.getPythonPath()).isEqualTo("python");
+
+    settings.setProperty(PylintConfiguration.PYTHON_KEY, "/usr/bin/python3");
+    assertThat(pylintConfiguration.getPythonPath()).isEqualTo("/usr/bin/python3");
+  }
 }
@@ -0,0 +1,181 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.python.pylint;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.apache.commons.lang.SystemUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.SonarException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+public class PylintDaemonTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File helper;
+  private PylintDaemon daemon;
+
+  @Before
+  public void setUp() throws Exception {
+    Assume.assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+    // stands in for pylint_daemon.py: one issue per file on the line numbered after the requests served by the process,
+    // a crash on the first 'crash.py', no answer for 'hang.py', an error of pylint for 'error.py'
+    File crashed = new File(tempFolder.getRoot(), "crashed");
+    helper = tempFolder.newFile("fake_daemon");
+    Files.write("#!/bin/sh\n"
+      + "n=0\n"
+      + "while IFS= read -r line; do\n"
+      + "  n=$((n+1))\n"
+      + "  case \"$line\" in\n"
+      + "    *crash.py*) if [ ! -f " + crashed.getAbsolutePath() + " ]; then touch " + crashed.getAbsolutePath() + "; exit 1; fi;;\n"
+      + "    *hang.py*) sleep 5;;\n"
+      + "    *error.py*) echo \"$1:error:ValueError: boom\";;\n"
+      + "  esac\n"
+      + "  for f in $(echo \"$line\" | tr '\\t' ' '); do echo \"$f:$n: [C0111(missing-docstring), ] Missing docstring\"; done\n"
+      + "  echo \"$1\"\n"
+      + "done\n", helper, Charsets.UTF_8);
+    helper.setExecutable(true);
+    daemon = new PylintDaemon(ImmutableList.of(helper.getAbsolutePath(), PylintDaemon.END_MARKER));
+  }
+
+  @After
+  public void tearDown() {
+    if (daemon != null) {
+      daemon.close();
+    }
+  }
+
+  @Test
+  public void shouldAnswerSeveralRequests() {
+    List<Issue> issues = daemon.analyze(ImmutableList.of("a.py", "b.py"), 5000, null);
+    assertThat(issues).hasSize(2);
+    assertThat(issues.get(1).getFilename()).isEqualTo("b.py");
+
+    assertThat(daemon.analyze(ImmutableList.of("c.py"), 5000, null)).hasSize(1);
+  }
+
+  @Test
+  public void shouldRestartAfterCrash() {
+    List<Issue> issues = daemon.analyze(ImmutableList.of("crash.py"), 5000, null);
+    assertThat(issues).hasSize(1);
+  }
+
+  @Test
+  public void shouldSkipBatchAndRestartAfterTimeout() {
+    assertThat(daemon.analyze(ImmutableList.of("hang.py"), 200, null)).isNull();
+
+    List<Issue> issues = daemon.analyze(ImmutableList.of("a.py"), 5000, null);
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).getLine()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldSkipBatchAndKeepProcessAfterError() {
+    assertThat(daemon.analyze(ImmutableList.of("error.py"), 5000, null)).isNull();
+
+    List<Issue> issues = daemon.analyze(ImmutableList.of("a.py"), 5000, null);
+    assertThat(issues).hasSize(1);
+    // second request served by the same process
+    assertThat(issues.get(0).getLine()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldReportPylintErrorsOfDaemonScript() throws Exception {
+    Assume.assumeTrue(isPythonAvailable());
+    // the directory of the script comes first in the python path, so that the script imports this fake pylint
+    File scriptDir = tempFolder.newFolder();
+    File pylintPackage = new File(scriptDir, "pylint");
+    pylintPackage.mkdir();
+    Files.write("", new File(pylintPackage, "__init__.py"), Charsets.UTF_8);
+    Files.write("import sys\n"
+      + "\n"
+      + "\n"
+      + "class Run(object):\n"
+      + "\n"
+      + "    def __init__(self, args):\n"
+      + "        for path in args:\n"
+      + "            if path.endswith('error.py'):\n"
+      + "                raise ValueError('cannot analyse ' + path)\n"
+      + "            if path.endswith('.py'):\n"
+      + "                sys.stdout.write(path + ':1: [C0111(missing-docstring), ] Missing docstring\\n')\n"
+      + "        sys.exit(0)\n", new File(pylintPackage, "lint.py"), Charsets.UTF_8);
+    File script = new File(scriptDir, "pylint_daemon.py");
+    Files.copy(new File(getClass().getResource("/org/sonar/plugins/python/pylint/pylint_daemon.py").toURI()), script);
+    daemon.close();
+    daemon = new PylintDaemon(ImmutableList.of("python", script.getAbsolutePath(), PylintDaemon.END_MARKER, "-r", "n"));
+
+    assertThat(daemon.analyze(ImmutableList.of("a.py"), 10000, null)).hasSize(1);
+    assertThat(daemon.analyze(ImmutableList.of("error.py", "b.py"), 10000, null)).isNull();
+    assertThat(daemon.analyze(ImmutableList.of("c.py", "d.py"), 10000, null)).hasSize(2);
+  }
+
+  @Test
+  public void shouldReplaceProcessAfterMaxRequests() {
+    daemon.close();
+    daemon = new PylintDaemon(ImmutableList.of(helper.getAbsolutePath(), PylintDaemon.END_MARKER), 2);
+
+    assertThat(daemon.analyze(ImmutableList.of("a.py"), 5000, null).get(0).getLine()).isEqualTo(1);
+    assertThat(daemon.analyze(ImmutableList.of("a.py"), 5000, null).get(0).getLine()).isEqualTo(2);
+    assertThat(daemon.analyze(ImmutableList.of("a.py"), 5000, null).get(0).getLine()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldFailWhenStoppedTwice() throws Exception {
+    File script = tempFolder.newFile("failing_daemon");
+    Files.write("#!/bin/sh\nexit 1\n", script, Charsets.UTF_8);
+    script.setExecutable(true);
+    daemon.close();
+    daemon = new PylintDaemon(ImmutableList.of(script.getAbsolutePath(), PylintDaemon.END_MARKER));
+
+    try {
+      daemon.analyze(ImmutableList.of("a.py"), 5000, null);
+      fail();
+    } catch (SonarException e) {
+      assertThat(e.getMessage()).contains("twice");
+    }
+  }
+
+  private static boolean isPythonAvailable() {
+    try {
+      Process process = new ProcessBuilder("python", "--version").redirectErrorStream(true).start();
+      return process.waitFor() == 0;
+    } catch (IOException e) {
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+}
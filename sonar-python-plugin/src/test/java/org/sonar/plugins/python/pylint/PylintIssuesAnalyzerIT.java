@@ -19,21 +19,14 @@
  */
 package org.sonar.plugins.python.pylint;
 
-import com.google.common.base.Charsets;
-import org.junit.Rule;
 import org.junit.Test;
-import org.junit.rules.TemporaryFolder;
 
-import java.io.File;
 import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 
 public class PylintIssuesAnalyzerIT {
 
-  @Rule
-  public TemporaryFolder tempFolder = new TemporaryFolder();
-
   @Test
   public void issuesTest() throws Exception {
     String pylintrcResource = "/org/sonar/plugins/python/pylint/pylintrc_sample";
@@ -41,9 +34,8 @@ public class PylintIssuesAnalyzerIT {
     String pylintConfigPath = getClass().getResource(pylintrcResource).getPath();
     String codeChunksPathName = getClass().getResource(codeChunksResource).getPath();
     String pylintPath = null;
-    File out = tempFolder.newFile();
 
-    List<Issue> issues = new PylintIssuesAnalyzer(pylintPath, pylintConfigPath).analyze(codeChunksPathName, Charsets.UTF_8, out);
+    List<Issue> issues = new PylintIssuesAnalyzer(pylintPath, pylintConfigPath).analyze(codeChunksPathName);
     assertThat(issues).isNotEmpty();
   }
 
@@ -19,11 +19,18 @@
  */
 package org.sonar.plugins.python.pylint;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
 import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.SonarException;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.LinkedList;
@@ -31,9 +38,15 @@ import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class PylintIssuesAnalyzerTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Test
   public void shouldParseCorrectly() {
     String resourceName = "/org/sonar/plugins/python/pylint/sample_pylint_output.txt";
@@ -83,6 +96,19 @@ public class PylintIssuesAnalyzerTest {
     assertThat(getIds(issuesOld)).isEqualTo(getIds(issuesNew));
   }
 
+  @Test
+  public void shouldParseSingleLine() {
+    Issue issue = PylintIssuesAnalyzer.parseLine("complexity/code_chunks.py:62: [W0104, list_compr] Statement seems to have no effect");
+    assertThat(issue.getFilename()).isEqualTo("complexity/code_chunks.py");
+    assertThat(issue.getLine()).isEqualTo(62);
+    assertThat(issue.getRuleId()).isEqualTo("W0104");
+    assertThat(issue.getObjname()).isEqualTo("list_compr");
+
+    assertThat(PylintIssuesAnalyzer.parseLine("")).isNull();
+    assertThat(PylintIssuesAnalyzer.parseLine("    detail")).isNull();
+    assertThat(PylintIssuesAnalyzer.parseLine("************* Module code_chunks")).isNull();
+  }
+
   @Test
   public void shouldWorkWithValidCustomConfig() {
     String resourceName = "/org/sonar/plugins/python/pylint/pylintrc_sample";
@@ -142,6 +168,65 @@ public class PylintIssuesAnalyzerTest {
     }
   }
 
+  @Test
+  public void shouldEnableOnlyGivenRules() {
+    PylintArguments arguments = mock(PylintArguments.class);
+    List<String> ruleIds = ImmutableList.of("W0611", "E1300", "C0111");
+
+    when(arguments.isOlderThan(0, 24)).thenReturn(false);
+    assertThat(new PylintIssuesAnalyzer(null, null, arguments, ruleIds).getMessageArguments())
+      .containsExactly("--disable=all", "--enable=C0111,E1300,W0611");
+
+    when(arguments.isOlderThan(0, 24)).thenReturn(true);
+    assertThat(new PylintIssuesAnalyzer(null, null, arguments, ruleIds).getMessageArguments())
+      .containsExactly("--disable=all", "--enable=C0111,E9900,W0611");
+
+    assertThat(new PylintIssuesAnalyzer(null, null, arguments, null).getMessageArguments()).isEmpty();
+  }
+
+  @Test
+  public void shouldKeepMessagesDisabledByConfiguration() throws Exception {
+    File pylintConfig = temp.newFile("pylintrc");
+    Files.write("[MESSAGES CONTROL]\n# W0612 is not disabled\ndisable=W0611,\n    C, unused-import\n\n[REPORTS]\nreports=no\n", pylintConfig, Charsets.UTF_8);
+    assertThat(PylintIssuesAnalyzer.disabledMessages(pylintConfig)).containsOnly("w0611", "c", "unused-import");
+
+    PylintArguments arguments = mock(PylintArguments.class);
+    List<String> ruleIds = ImmutableList.of("W0611", "W0612", "E1300", "C0111");
+    assertThat(new PylintIssuesAnalyzer(null, pylintConfig.getPath(), arguments, ruleIds).getMessageArguments())
+      .containsExactly("--disable=all", "--enable=E1300,W0612");
+
+    Files.write("[MESSAGES CONTROL]\ndisable = all\n", pylintConfig, Charsets.UTF_8);
+    assertThat(new PylintIssuesAnalyzer(null, pylintConfig.getPath(), arguments, ruleIds).getMessageArguments())
+      .containsExactly("--disable=all");
+  }
+
+  @Test
+  public void shouldKeepMessagesDisabledBySymbolicName() throws Exception {
+    File pylintConfig = temp.newFile("pylintrc");
+    Files.write("[MESSAGES CONTROL]\ndisable=unused-import,logging-not-lazy,unknown-message\n", pylintConfig, Charsets.UTF_8);
+    PylintArguments arguments = mock(PylintArguments.class);
+    when(arguments.messageIdsBySymbol()).thenReturn(ImmutableMap.of("unused-import", "W0611", "logging-not-lazy", "W1201"));
+    List<String> ruleIds = ImmutableList.of("W0611", "W0612", "W1201");
+
+    assertThat(new PylintIssuesAnalyzer(null, pylintConfig.getPath(), arguments, ruleIds).getMessageArguments())
+      .containsExactly("--disable=all", "--enable=W0612");
+
+    // pylint 0.23 lists the message of the W1201 rule as W6501
+    when(arguments.isOlderThan(0, 24)).thenReturn(true);
+    when(arguments.messageIdsBySymbol()).thenReturn(ImmutableMap.of("logging-not-lazy", "W6501"));
+    assertThat(new PylintIssuesAnalyzer(null, pylintConfig.getPath(), arguments, ruleIds).getMessageArguments())
+      .containsExactly("--disable=all", "--enable=W0611,W0612");
+  }
+
+  @Test
+  public void shouldNotListMessagesWithoutSymbolicNames() throws Exception {
+    File pylintConfig = temp.newFile("pylintrc");
+    Files.write("[MESSAGES CONTROL]\ndisable=W0611,C\n", pylintConfig, Charsets.UTF_8);
+    PylintArguments arguments = mock(PylintArguments.class);
+    new PylintIssuesAnalyzer(null, pylintConfig.getPath(), arguments, ImmutableList.of("W0611"));
+    verify(arguments, never()).messageIdsBySymbol();
+  }
+
   private List<String> readFile(String path) {
     List<String> lines = new LinkedList<String>();
 
@@ -0,0 +1,107 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011 SonarSource and Waleri Enns
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.python.pylint;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class PylintReportParserTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void shouldParseJsonReport() throws Exception {
+    List<Issue> issues = PylintReportParser.parse(resource("sample_pylint_report.json"), Charsets.UTF_8);
+
+    assertThat(issues).hasSize(3);
+    assertThat(issues.get(0).getFilename()).isEqualTo("src/prod.py");
+    assertThat(issues.get(0).getLine()).isEqualTo(1);
+    assertThat(issues.get(0).getRuleId()).isEqualTo("C0111");
+    assertThat(issues.get(1).getDescr()).isEqualTo("Use of \"eval\" is discouraged\n");
+    assertThat(issues.get(1).getObjname()).isEqualTo("run");
+    assertThat(issues.get(2).getRuleId()).isEqualTo("W1300");
+    assertThat(issues.get(2).getObjname()).isNull();
+  }
+
+  @Test
+  public void shouldParseTextReport() throws Exception {
+    List<Issue> issues = PylintReportParser.parse(resource("sample_pylint_output.txt"), Charsets.UTF_8);
+    assertThat(issues).hasSize(21);
+  }
+
+  @Test
+  public void shouldUnescapeJsonStrings() throws Exception {
+    List<Issue> issues = PylintReportParser.parse(report(
+      "[{\"path\": \"src/a\\\\b.py\", \"line\": 3, \"message-id\": \"W0123\",",
+      "  \"obj\": \"f\\/g\", \"message\": \"\\\"q\\\"\\tx\\r\\n\\b\\f\\u00e9\\u20AC\"}]"), Charsets.UTF_8);
+
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).getFilename()).isEqualTo("src/a\\b.py");
+    assertThat(issues.get(0).getObjname()).isEqualTo("f/g");
+    assertThat(issues.get(0).getDescr()).isEqualTo("\"q\"\tx\r\n\b\f\u00e9\u20ac");
+  }
+
+  @Test
+  public void shouldSkipMessagesWithoutValidLine() throws Exception {
+    List<Issue> issues = PylintReportParser.parse(report(
+      "[{\"path\": \"a.py\", \"line\": \"x\", \"message-id\": \"C0111\", \"message\": \"m\"},",
+      " {\"path\": \"a.py\", \"message-id\": \"C0111\", \"message\": \"m\"},",
+      " {\"path\": \"a.py\", \"line\": null, \"message-id\": \"C0111\", \"message\": \"m\"},",
+      " {\"path\": \"a.py\", \"line\": 2, \"message-id\": \"C0111\", \"message\": \"m\", \"extra\": [1, {\"k\": \"]\"}]}]"), Charsets.UTF_8);
+
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).getLine()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldKeepIssuesReadBeforeTruncation() throws Exception {
+    String first = "[{\"path\": \"a.py\", \"line\": 1, \"message-id\": \"C0111\", \"message\": \"m\"},";
+
+    assertThat(PylintReportParser.parse(report(first), Charsets.UTF_8)).hasSize(1);
+    assertThat(PylintReportParser.parse(report(first, " {\"path\": \"a.py\", \"li"), Charsets.UTF_8)).hasSize(1);
+    assertThat(PylintReportParser.parse(report(first, " {\"path\": \"a.py\", \"message\": \"\\u00"), Charsets.UTF_8)).hasSize(1);
+    assertThat(PylintReportParser.parse(report(first, " {\"path\": \"a.py\", \"message\": \"\\uzzzz\"}]"), Charsets.UTF_8)).hasSize(1);
+    assertThat(PylintReportParser.parse(report("["), Charsets.UTF_8)).isEmpty();
+  }
+
+  private File report(String... lines) throws Exception {
+    File report = temp.newFile();
+    StringBuilder content = new StringBuilder();
+    for (String line : lines) {
+      content.append(line).append('\n');
+    }
+    Files.write(content.toString(), report, Charsets.UTF_8);
+    return report;
+  }
+
+  private File resource(String name) throws Exception {
+    return new File(getClass().getResource("/org/sonar/plugins/python/pylint/" + name).toURI());
+  }
+
+}
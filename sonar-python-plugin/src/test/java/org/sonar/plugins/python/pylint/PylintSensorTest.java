@@ -19,34 +19,65 @@
  */
 package org.sonar.plugins.python.pylint;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
 import org.apache.commons.collections.ListUtils;
+import org.apache.commons.lang.SystemUtils;
+import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.SensorContext;
 import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.Issuable;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.ProjectFileSystem;
+import org.sonar.api.resources.Resource;
 import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.scan.filesystem.FileQuery;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.api.utils.SonarException;
 import org.sonar.plugins.python.Python;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.ZipFile;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class PylintSensorTest {
 
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
   private ModuleFileSystem fs;
   private RuleFinder ruleFinder;
   private PylintConfiguration conf;
   private RulesProfile profile;
+  private File sourceDir;
+  private final List<String> savedFileNames = Collections.synchronizedList(Lists.<String>newArrayList());
 
   @Before
   public void init() {
@@ -82,9 +113,257 @@ public class PylintSensorTest {
   }
 
   @Test
-  public void analyse() {
+  public void shouldReuseCachedIssues() throws Exception {
+    Assume.assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+    File sources = tempFolder.newFolder();
+    File first = new File(sources, "first.py");
+    File second = new File(sources, "second.py");
+    Files.write("print 1\n", first, Charsets.UTF_8);
+    Files.write("print 2\n", second, Charsets.UTF_8);
+    File runs = new File(sources, "runs.txt");
+    File pylint = tempFolder.newFile("pylint");
+    Files.write("#!/bin/sh\n"
+      + "if [ \"$1\" = \"--version\" ]; then echo pylint 1.1.0; exit 0; fi\n"
+      + "echo run >> " + runs.getAbsolutePath() + "\n"
+      + "for f in \"$@\"; do case \"$f\" in *.py) echo \"$f:1: [C0111(missing-docstring), ] Missing docstring\";; esac; done\n",
+      pylint, Charsets.UTF_8);
+    pylint.setExecutable(true);
+
+    Settings settings = new Settings();
+    settings.setProperty(PylintConfiguration.PYLINT_KEY, pylint.getAbsolutePath());
+    settings.setProperty(PylintConfiguration.PYLINT_BATCH_SIZE_KEY, "2");
+    settings.setProperty(PylintConfiguration.PYLINT_CACHE_KEY, "true");
+    settings.setProperty(PylintConfiguration.PYLINT_ARCHIVE_OUTPUT_KEY, "true");
+    File workingDir = tempFolder.newFolder();
+    when(fs.workingDir()).thenReturn(workingDir);
+    when(fs.sourceCharset()).thenReturn(Charsets.UTF_8);
+    when(fs.files(any(FileQuery.class))).thenReturn(ImmutableList.of(first, second));
+
+    org.sonar.api.rules.Rule rule = mock(org.sonar.api.rules.Rule.class);
+    when(rule.isEnabled()).thenReturn(true);
+    when(rule.getRepositoryKey()).thenReturn(PylintRuleRepository.REPOSITORY_KEY);
+    when(rule.getKey()).thenReturn("C0111");
+    when(ruleFinder.findByKey(PylintRuleRepository.REPOSITORY_KEY, "C0111")).thenReturn(rule);
+    Issuable issuable = mockIssuable();
+    ResourcePerspectives perspectives = mock(ResourcePerspectives.class);
+    when(perspectives.as(Mockito.eq(Issuable.class), Mockito.any(Resource.class))).thenReturn(issuable);
+
+    ProjectFileSystem pfs = mock(ProjectFileSystem.class);
+    when(pfs.getSourceDirs()).thenReturn(ImmutableList.of(sources));
+    Project project = new Project("key");
+    project.setFileSystem(pfs);
+
+    PylintConfiguration configuration = new PylintConfiguration(settings);
+    new PylintSensor(ruleFinder, configuration, profile, fs, perspectives).analyse(project, mock(SensorContext.class));
+    ZipFile archive = new ZipFile(new File(workingDir, "pylint/pylint-output.zip"));
+    assertThat(Collections.list(archive.entries())).hasSize(1);
+    archive.close();
+
+    new PylintSensor(ruleFinder, configuration, profile, fs, perspectives).analyse(project, mock(SensorContext.class));
+
+    assertThat(Files.readLines(runs, Charsets.UTF_8)).hasSize(1);
+    verify(issuable, times(4)).addIssue(Mockito.any(org.sonar.api.issue.Issue.class));
+  }
+
+  @Test
+  public void shouldSaveIssuesOfParallelBatchesInFileOrder() throws Exception {
+    Assume.assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+    final List<File> files = createSourceFiles(6);
+    final Set<String> threads = Collections.synchronizedSet(Sets.<String>newHashSet());
+    PylintSensor sensor = new PylintSensor(ruleFinder, parallelConfiguration(), profile, fs, recordingPerspectives()) {
+      @Override
+      protected Map<File, List<Issue>> analyzeFiles(PylintIssuesAnalyzer analyzer, BlockingQueue<PylintDaemon> daemons, List<File> batch,
+        List<String> rawOutput) {
+        threads.add(Thread.currentThread().getName());
+        // the first batch completes last
+        sleep((files.size() - files.indexOf(batch.get(0))) * 50L);
+        return missingDocstrings(batch);
+      }
+    };
+
+    sensor.analyse(sourceProject(), mock(SensorContext.class));
+
+    assertThat(threads).hasSize(3);
+    assertThat(savedFileNames).containsExactly("f0.py", "f1.py", "f2.py", "f3.py", "f4.py", "f5.py");
+  }
+
+  @Test
+  public void shouldReportTheFilesOfAFailingBatch() throws Exception {
+    Assume.assumeTrue(!SystemUtils.IS_OS_WINDOWS);
+    final List<File> files = createSourceFiles(6);
+    PylintSensor sensor = new PylintSensor(ruleFinder, parallelConfiguration(), profile, fs, recordingPerspectives()) {
+      @Override
+      protected Map<File, List<Issue>> analyzeFiles(PylintIssuesAnalyzer analyzer, BlockingQueue<PylintDaemon> daemons, List<File> batch,
+        List<String> rawOutput) {
+        if (batch.contains(files.get(2))) {
+          throw new IllegalStateException("pylint crashed");
+        }
+        return missingDocstrings(batch);
+      }
+    };
+
+    try {
+      sensor.analyse(sourceProject(), mock(SensorContext.class));
+      fail();
+    } catch (SonarException e) {
+      assertThat(e.getMessage()).contains("f2.py").contains("f3.py").excludes("f0.py").excludes("f4.py");
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+    // the issues are only saved once all the batches have been analysed
+    assertThat(savedFileNames).isEmpty();
+  }
+
+  @Test
+  public void shouldImportReportsWithoutRunningPylint() throws Exception {
+    File baseDir = tempFolder.newFolder();
+    File prod = new File(baseDir, "src/prod.py");
+    File other = new File(baseDir, "src/other.py");
+    Files.createParentDirs(prod);
+    Files.write("print 1\n", prod, Charsets.UTF_8);
+    Files.write("print 2\n", other, Charsets.UTF_8);
+    Files.copy(new File(getClass().getResource("/org/sonar/plugins/python/pylint/sample_pylint_report.json").toURI()), new File(baseDir, "pylint.json"));
+
+    Settings settings = new Settings();
+    settings.setProperty(PylintConfiguration.PYLINT_KEY, "/not/existing/pylint");
+    settings.setProperty(PylintConfiguration.PYLINT_REPORT_PATH_KEY, "*.json");
+    when(fs.baseDir()).thenReturn(baseDir);
+    when(fs.sourceCharset()).thenReturn(Charsets.UTF_8);
+    when(fs.files(any(FileQuery.class))).thenReturn(ImmutableList.of(prod, other));
+
+    org.sonar.api.rules.Rule rule = mock(org.sonar.api.rules.Rule.class);
+    when(rule.isEnabled()).thenReturn(true);
+    when(rule.getRepositoryKey()).thenReturn(PylintRuleRepository.REPOSITORY_KEY);
+    when(rule.getKey()).thenReturn("C0111");
+    when(ruleFinder.findByKey(Mockito.eq(PylintRuleRepository.REPOSITORY_KEY), Mockito.anyString())).thenReturn(rule);
+    Issuable issuable = mockIssuable();
+    ResourcePerspectives perspectives = mock(ResourcePerspectives.class);
+    when(perspectives.as(Mockito.eq(Issuable.class), Mockito.any(Resource.class))).thenReturn(issuable);
+
+    ProjectFileSystem pfs = mock(ProjectFileSystem.class);
+    when(pfs.getSourceDirs()).thenReturn(ImmutableList.of(new File(baseDir, "src")));
+    Project project = new Project("key");
+    project.setFileSystem(pfs);
+
+    new PylintSensor(ruleFinder, new PylintConfiguration(settings), profile, fs, perspectives).analyse(project, mock(SensorContext.class));
+
+    verify(issuable, times(3)).addIssue(Mockito.any(org.sonar.api.issue.Issue.class));
+    assertThat(new File(baseDir, "pylint")).doesNotExist();
+  }
+
+  private List<File> createSourceFiles(int count) throws Exception {
+    sourceDir = tempFolder.newFolder();
+    List<File> files = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      File file = new File(sourceDir, "f" + i + ".py");
+      Files.write("print " + i + "\n", file, Charsets.UTF_8);
+      files.add(file);
+    }
+    when(fs.workingDir()).thenReturn(tempFolder.newFolder());
+    when(fs.sourceCharset()).thenReturn(Charsets.UTF_8);
+    when(fs.files(any(FileQuery.class))).thenReturn(files);
+
+    org.sonar.api.rules.Rule rule = mock(org.sonar.api.rules.Rule.class);
+    when(rule.isEnabled()).thenReturn(true);
+    when(rule.getRepositoryKey()).thenReturn(PylintRuleRepository.REPOSITORY_KEY);
+    when(rule.getKey()).thenReturn("C0111");
+    when(ruleFinder.findByKey(PylintRuleRepository.REPOSITORY_KEY, "C0111")).thenReturn(rule);
+    return files;
+  }
+
+  /**
+   * Three threads for three batches of two files, with a pylint executable which only tells its version.
+   */
+  private PylintConfiguration parallelConfiguration() throws Exception {
+    File pylint = tempFolder.newFile("pylint");
+    Files.write("#!/bin/sh\necho pylint 1.1.0\n", pylint, Charsets.UTF_8);
+    pylint.setExecutable(true);
+    Settings settings = new Settings();
+    settings.setProperty(PylintConfiguration.PYLINT_KEY, pylint.getAbsolutePath());
+    settings.setProperty(PylintConfiguration.PYLINT_BATCH_SIZE_KEY, "2");
+    settings.setProperty(PylintConfiguration.PYLINT_THREADS_KEY, "3");
+    return new PylintConfiguration(settings);
+  }
+
+  private ResourcePerspectives recordingPerspectives() {
+    final Issuable issuable = mockIssuable();
+    ResourcePerspectives perspectives = mock(ResourcePerspectives.class);
+    when(perspectives.as(Mockito.eq(Issuable.class), Mockito.any(Resource.class))).thenAnswer(new Answer<Issuable>() {
+      public Issuable answer(InvocationOnMock invocation) {
+        savedFileNames.add(((Resource) invocation.getArguments()[1]).getName());
+        return issuable;
+      }
+    });
+    return perspectives;
+  }
+
+  private Project sourceProject() {
+    ProjectFileSystem pfs = mock(ProjectFileSystem.class);
+    when(pfs.getSourceDirs()).thenReturn(ImmutableList.of(sourceDir));
+    Project project = new Project("key");
+    project.setFileSystem(pfs);
+    return project;
+  }
+
+  private static Map<File, List<Issue>> missingDocstrings(List<File> batch) {
+    Map<File, List<Issue>> issuesByFile = Maps.newHashMap();
+    for (File file : batch) {
+      List<Issue> issues = Lists.newArrayList();
+      issues.add(new Issue(file.getAbsolutePath(), 1, "C0111", null, "Missing docstring"));
+      issuesByFile.put(file, issues);
+    }
+    return issuesByFile;
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Issuable mockIssuable() {
+    final Issuable.IssueBuilder issueBuilder = mock(Issuable.IssueBuilder.class, new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) {
+        return invocation.getMethod().getReturnType().isInstance(invocation.getMock()) ? invocation.getMock() : null;
+      }
+    });
+    Issuable issuable = mock(Issuable.class);
+    when(issuable.newIssueBuilder()).thenReturn(issueBuilder);
+    return issuable;
+  }
+
+  @Test
+  public void shouldSplitIssuesOfBatchByFile() {
+    File first = new File("src/test/resources/org/sonar/plugins/python/code_chunks_2.py");
+    File second = new File("src/test/resources/org/sonar/plugins/python/smoketest_project_1/src/prod.py");
+    List<Issue> issues = ImmutableList.of(
+      new Issue(first.getAbsolutePath(), 1, "C0111", null, "Missing docstring"),
+      new Issue("src/test/resources/org/sonar/plugins/python/smoketest_project_1/src/prod.py", 2, "C0111", null, "Missing docstring"),
+      new Issue("smoketest_project_1/src/prod.py", 3, "C0111", null, "Missing docstring"),
+      new Issue("unknown.py", 4, "C0111", null, "Missing docstring"));
+
+    Map<File, List<Issue>> issuesByFile = PylintSensor.issuesByFile(ImmutableList.of(first, second), issues, null);
+
+    assertThat(issuesByFile.get(first)).hasSize(1);
+    assertThat(issuesByFile.get(second)).hasSize(2);
+  }
+
+  @Test
+  public void shouldGiveSharedPathEndToFirstFile() {
+    File first = new File("src/test/resources/org/sonar/plugins/python/smoketest_project_1/src/prod.py");
+    File second = new File("src/test/resources/org/sonar/plugins/python/smoketest_project_2/src/prod.py");
+    List<Issue> issues = ImmutableList.of(
+      new Issue("src/prod.py", 1, "C0111", null, "Missing docstring"),
+      new Issue("smoketest_project_2/src/prod.py", 2, "C0111", null, "Missing docstring"),
+      new Issue("other/prod.py", 3, "C0111", null, "Missing docstring"));
 
+    Map<File, List<Issue>> issuesByFile = PylintSensor.issuesByFile(ImmutableList.of(first, second), issues, null);
 
+    assertThat(issuesByFile.get(first)).hasSize(1);
+    assertThat(issuesByFile.get(second)).hasSize(1);
+    assertThat(issuesByFile.get(second).get(0).getLine()).isEqualTo(2);
   }
 
   private void checkNecessityOfExecution(Project project, RulesProfile profile, boolean shouldExecute) {
@@ -0,0 +1,4 @@
+if a <> b:
+    pass
+if b <> c:
+    pass
@@ -29,6 +29,7 @@ import org.sonar.colorizer.KeywordsTokenizer;
 import org.sonar.colorizer.Tokenizer;
 import org.sonar.python.PythonConfiguration;
 import org.sonar.python.api.PythonKeyword;
+import org.sonar.python.parser.ParseProfile;
 import org.sonar.python.parser.PythonParser;
 import org.sonar.sslr.toolkit.AbstractConfigurationModel;
 import org.sonar.sslr.toolkit.ConfigurationProperty;
@@ -42,12 +43,19 @@ public class PythonConfigurationModel extends AbstractConfigurationModel {
   private static final Logger LOG = LoggerFactory.getLogger(PythonConfigurationModel.class);
 
   private static final String CHARSET_PROPERTY_KEY = "sonar.sourceEncoding";
+  private static final String PROFILE_PARSER_PROPERTY_KEY = "sonar.python.squid.profile_parser";
 
   @VisibleForTesting
   ConfigurationProperty charsetProperty = new ConfigurationProperty("Charset", CHARSET_PROPERTY_KEY,
     getPropertyOrDefaultValue(CHARSET_PROPERTY_KEY, "UTF-8"),
     Validators.charsetValidator());
 
+  @VisibleForTesting
+  ConfigurationProperty profileParserProperty = new ConfigurationProperty("Parser profiling", PROFILE_PARSER_PROPERTY_KEY
+    + " (the time spent to lex and parse, and the calls, memo hits, failures and time of each rule, are logged after each parse)",
+    getPropertyOrDefaultValue(PROFILE_PARSER_PROPERTY_KEY, "false"),
+    Validators.booleanValidator());
+
   @Override
   public Charset getCharset() {
     return Charset.forName(charsetProperty.getValue());
@@ -55,7 +63,7 @@ public class PythonConfigurationModel extends AbstractConfigurationModel {
 
   @Override
   public List<ConfigurationProperty> getProperties() {
-    return ImmutableList.of(charsetProperty);
+    return ImmutableList.of(charsetProperty, profileParserProperty);
   }
 
   @Override
@@ -71,7 +79,16 @@ public class PythonConfigurationModel extends AbstractConfigurationModel {
 
   @VisibleForTesting
   PythonConfiguration getConfiguration() {
-    return new PythonConfiguration(Charset.forName(charsetProperty.getValue()));
+    PythonConfiguration configuration = new PythonConfiguration(Charset.forName(charsetProperty.getValue()));
+    if (Boolean.parseBoolean(profileParserProperty.getValue())) {
+      configuration.setParseProfile(new ParseProfile() {
+        @Override
+        protected void fileProfiled(FileProfile file) {
+          LOG.info("Parse profile of " + file.report());
+        }
+      });
+    }
+    return configuration;
   }
 
   @VisibleForTesting
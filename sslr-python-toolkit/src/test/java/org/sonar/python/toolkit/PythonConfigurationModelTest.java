@@ -42,6 +42,15 @@ public class PythonConfigurationModelTest {
     assertThat(model.getConfiguration().getCharset()).isEqualTo(Charsets.ISO_8859_1);
   }
 
+  @Test
+  public void getConfiguration_parse_profile() {
+    PythonConfigurationModel model = new PythonConfigurationModel();
+    model.profileParserProperty.setValue("false");
+    assertThat(model.getConfiguration().getParseProfile()).isNull();
+    model.profileParserProperty.setValue("true");
+    assertThat(model.getConfiguration().getParseProfile()).isNotNull();
+  }
+
   @Test
   public void getPropertyOrDefaultValue_with_property_set() {
     String oldValue = System.getProperty("foo");